@@ -0,0 +1,359 @@
+package com.jmedeisis.windowview;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+
+import com.jmedeisis.windowview.pyramid.PyramidImage;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decodes images off the main thread, scaled to the size of the view that will display them, i.e.
+ * such that the image just covers the view when scaled with CENTER_CROP. Used by
+ * {@link WindowView}.
+ */
+class AsyncImageLoader {
+
+    /**
+     * An image to load.
+     */
+    interface Source {
+        /**
+         * Called on a background thread.
+         *
+         * @return stable identifier of the image, used as the {@link BitmapDiskCache} key. Changes
+         * whenever the image may have changed, so that stale cache entries are not used.
+         */
+        String getKey();
+
+        InputStream open() throws IOException;
+    }
+
+    /**
+     * Interface for callbacks to be invoked on the main thread when a {@link Request} completes.
+     * Not invoked for cancelled requests.
+     */
+    interface Callback {
+        /**
+         * @param bitmap ownership passes to the callback.
+         */
+        void onLoaded(Request request, Bitmap bitmap);
+
+        /**
+         * @param error an {@link IOException}, or a {@link RuntimeException} or
+         *              {@link OutOfMemoryError} thrown while opening or decoding the image.
+         */
+        void onFailed(Request request, Throwable error);
+    }
+
+    private static final int THREAD_COUNT = 2;
+    private static final long KEEP_ALIVE_SECONDS = 5;
+
+    /**
+     * Shared between all views, so that many views loading at once (e.g. in a scrolling list) do
+     * not each get their own thread.
+     */
+    static final ThreadPoolExecutor DEFAULT_EXECUTOR = new ThreadPoolExecutor(
+            THREAD_COUNT, THREAD_COUNT, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(@NonNull Runnable r) {
+            Thread thread = new Thread(r, "WindowView image loader");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    static {
+        DEFAULT_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    private AsyncImageLoader() {
+    }
+
+    /**
+     * Resources may change whenever the app is updated, so the key includes the app version.
+     */
+    static Source resource(Context context, final int resId) {
+        final Resources resources = context.getResources();
+        final PackageManager packageManager = context.getPackageManager();
+        final String packageName = context.getPackageName();
+        return new Source() {
+            @Override
+            public String getKey() {
+                String version;
+                try {
+                    final PackageInfo info = packageManager.getPackageInfo(packageName, 0);
+                    version = info.versionCode + "-" + info.lastUpdateTime;
+                } catch (PackageManager.NameNotFoundException e) {
+                    version = "0";
+                }
+                return "res:" + resources.getResourceName(resId) + '@' + version;
+            }
+
+            @Override
+            public InputStream open() throws IOException {
+                return resources.openRawResource(resId);
+            }
+        };
+    }
+
+    static Source uri(final ContentResolver resolver, final Uri uri) {
+        return new Source() {
+            @Override
+            public String getKey() {
+                return uri.toString();
+            }
+
+            @Override
+            public InputStream open() throws IOException {
+                final InputStream stream = resolver.openInputStream(uri);
+                if (null == stream) throw new IOException("Could not open " + uri + ".");
+                return stream;
+            }
+        };
+    }
+
+    /**
+     * The key includes the file's modification time and length, so that a changed file is loaded
+     * again.
+     */
+    static Source file(final String path) {
+        return new Source() {
+            @Override
+            public String getKey() {
+                final File file = new File(path);
+                return "file:" + path + '@' + file.lastModified() + '-' + file.length();
+            }
+
+            @Override
+            public InputStream open() throws IOException {
+                return new FileInputStream(path);
+            }
+        };
+    }
+
+    /**
+     * Starts loading the given image for a view of the given size.
+     *
+     * @param cache may be null.
+     */
+    static Request load(Source source, int targetWidth, int targetHeight, BitmapDiskCache cache,
+                        Executor executor, Callback callback) {
+        final Request request = new Request(source, targetWidth, targetHeight, cache, null, 0,
+                executor, callback);
+        executor.execute(request);
+        return request;
+    }
+
+    /**
+     * Starts assembling the given level of an image pyramid. The level is already sized by
+     * {@link PyramidImage#selectLevel(int, int)}, so it is neither sampled, scaled nor cached.
+     */
+    static Request loadPyramidLevel(PyramidImage pyramid, int level, Executor executor,
+                                    Callback callback) {
+        final Request request = new Request(null, pyramid.getLevelWidth(level),
+                pyramid.getLevelHeight(level), null, pyramid, level, executor, callback);
+        executor.execute(request);
+        return request;
+    }
+
+    /**
+     * The smallest power of two subsampling of the given image that still covers the target size
+     * when scaled with CENTER_CROP.
+     */
+    static int computeSampleSize(int width, int height, int targetWidth, int targetHeight) {
+        final float cropScale = Math.max((float) targetWidth / width,
+                (float) targetHeight / height);
+        final float requiredWidth = width * cropScale;
+        final float requiredHeight = height * cropScale;
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= requiredWidth
+                && height / (sampleSize * 2) >= requiredHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    static class Request implements Runnable {
+        /**
+         * Null if loading a level of {@link #pyramid}.
+         */
+        final Source source;
+        final int targetWidth;
+        final int targetHeight;
+        private final BitmapDiskCache cache;
+        private final PyramidImage pyramid;
+        private final int pyramidLevel;
+        private final Executor executor;
+        private final Callback callback;
+        private final BitmapFactory.Options options = new BitmapFactory.Options();
+
+        private volatile boolean cancelled;
+
+        // timings, in milliseconds of SystemClock#uptimeMillis()
+        final long requestTime;
+        long startTime;
+        long endTime;
+        /**
+         * True if the image was read from the {@link BitmapDiskCache} rather than decoded.
+         */
+        boolean fromCache;
+
+        private Request(Source source, int targetWidth, int targetHeight, BitmapDiskCache cache,
+                        PyramidImage pyramid, int pyramidLevel, Executor executor,
+                        Callback callback) {
+            this.source = source;
+            this.targetWidth = targetWidth;
+            this.targetHeight = targetHeight;
+            this.cache = cache;
+            this.pyramid = pyramid;
+            this.pyramidLevel = pyramidLevel;
+            this.executor = executor;
+            this.callback = callback;
+            this.requestTime = SystemClock.uptimeMillis();
+        }
+
+        /**
+         * Cancels the request. A decode already in progress runs to completion, but its result is
+         * discarded. Must be called on the main thread; the callback will not be invoked
+         * afterwards.
+         */
+        void cancel() {
+            cancelled = true;
+            if (executor instanceof ThreadPoolExecutor) {
+                ((ThreadPoolExecutor) executor).remove(this);
+            }
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) return;
+            startTime = SystemClock.uptimeMillis();
+
+            Bitmap bitmap = null;
+            Throwable error = null;
+            try {
+                bitmap = decode();
+            } catch (IOException | RuntimeException | OutOfMemoryError e) {
+                // e.g. a missing resource or a denied URI; large images may not fit in memory
+                error = e;
+            }
+            endTime = SystemClock.uptimeMillis();
+            deliver(bitmap, error);
+        }
+
+        private Bitmap decode() throws IOException {
+            if (null != pyramid) return pyramid.decodeLevel(pyramidLevel);
+
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            final String key = null != cache ? source.getKey() : null;
+            if (null != cache) {
+                final Bitmap cached = cache.get(key, targetWidth, targetHeight,
+                        options.inPreferredConfig, null);
+                if (null != cached) {
+                    fromCache = true;
+                    return cached;
+                }
+            }
+
+            options.inJustDecodeBounds = true;
+            decodeStream();
+            if (cancelled) return null;
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                throw new IOException("Could not decode image bounds of " + source.getKey() + ".");
+            }
+
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = computeSampleSize(options.outWidth, options.outHeight,
+                    targetWidth, targetHeight);
+            final Bitmap sampled = decodeStream();
+            if (cancelled) return sampled;
+            if (null == sampled) {
+                throw new IOException("Could not decode " + source.getKey() + ".");
+            }
+            final Bitmap bitmap = scaleToTarget(sampled);
+
+            if (null != cache) {
+                try {
+                    cache.put(key, targetWidth, targetHeight, bitmap);
+                } catch (OutOfMemoryError e) {
+                    // caching is optional, the bitmap itself is complete
+                }
+            }
+            return bitmap;
+        }
+
+        /**
+         * The power of two subsampling leaves up to twice the required size on each axis; scales
+         * the rest of the way down so that only the pixels the view needs are kept and cached.
+         *
+         * @return the given bitmap if already small enough, otherwise a scaled copy. In that case,
+         * or if scaling fails, the given bitmap is recycled.
+         */
+        private Bitmap scaleToTarget(Bitmap bitmap) {
+            final int width = bitmap.getWidth();
+            final int height = bitmap.getHeight();
+            final float scale = Math.max((float) targetWidth / width,
+                    (float) targetHeight / height);
+            if (scale >= 1) return bitmap;
+            Bitmap scaled = null;
+            try {
+                scaled = Bitmap.createScaledBitmap(bitmap,
+                        Math.max(targetWidth, Math.round(width * scale)),
+                        Math.max(targetHeight, Math.round(height * scale)), true);
+            } finally {
+                if (scaled != bitmap) bitmap.recycle();
+            }
+            return scaled;
+        }
+
+        private Bitmap decodeStream() throws IOException {
+            final InputStream stream = source.open();
+            try {
+                return BitmapFactory.decodeStream(stream, null, options);
+            } finally {
+                stream.close();
+            }
+        }
+
+        private void deliver(final Bitmap bitmap, final Throwable error) {
+            MAIN_HANDLER.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (cancelled) {
+                        if (null != bitmap) bitmap.recycle();
+                    } else if (null != bitmap) {
+                        callback.onLoaded(Request.this, bitmap);
+                    } else if (null != error) {
+                        callback.onFailed(Request.this, error);
+                    }
+                }
+            });
+        }
+    }
+}
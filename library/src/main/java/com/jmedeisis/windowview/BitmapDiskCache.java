@@ -0,0 +1,351 @@
+package com.jmedeisis.windowview;
+
+import android.graphics.Bitmap;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * A bounded, least-recently-used disk cache of decoded, view-sized bitmaps. Entries hold raw
+ * pixels, so loading one is a file read and a copy into a Bitmap rather than an image decode.
+ * <p>
+ * Entries are keyed by image source, target size and config. Each file is laid out as:
+ * <pre>
+ * int32   magic, "WWVC"
+ * int32   version, 1
+ * int32   width
+ * int32   height
+ * int32   config, 1 = ARGB_8888, 2 = RGB_565
+ * int32   pixel byte count
+ * int64   CRC32 of pixels
+ * int32   key byte count
+ * byte[]  key, UTF-8
+ * byte[]  pixels, as per {@link Bitmap#copyPixelsToBuffer(java.nio.Buffer)}
+ * </pre>
+ * Corrupt or mismatching entries are treated as misses and deleted. Thread-safe; entries may be
+ * read and written on background threads, concurrently. Only the index of entries is guarded by a
+ * lock, file contents are read and written outside of it.
+ * <p>
+ * Construction does no disk I/O. The cache directory is created and scanned on first use, so the
+ * first call to {@link #get}, {@link #put}, {@link #clear()} or {@link #getSize()} should not be
+ * made on the main thread.
+ */
+public class BitmapDiskCache {
+
+    private static final int MAGIC = 0x43565757; // "WWVC" little-endian
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 36;
+    private static final String FILE_SUFFIX = ".px";
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final File directory;
+    private final long maxSizeBytes;
+    /**
+     * Size of each entry by file name, in access order.
+     */
+    private final LinkedHashMap<String, Long> entries =
+            new LinkedHashMap<String, Long>(16, 0.75f, true);
+    private long sizeBytes;
+    /**
+     * True once the directory has been scanned, see {@link #ensureIndexed()}.
+     */
+    private boolean indexed;
+    /**
+     * False if the directory could not be created, in which case nothing is cached.
+     */
+    private boolean available;
+
+    /**
+     * @param directory    dedicated directory for cache files, e.g. within
+     *                     {@link android.content.Context#getCacheDir()}. Created on first use if
+     *                     necessary.
+     * @param maxSizeBytes total size of the cache, beyond which least recently used entries are
+     *                     evicted.
+     */
+    public BitmapDiskCache(File directory, long maxSizeBytes) {
+        if (maxSizeBytes <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive.");
+        }
+        this.directory = directory;
+        this.maxSizeBytes = maxSizeBytes;
+    }
+
+    /**
+     * Creates the directory and restores the index of entries from it, once. Must hold the lock.
+     *
+     * @return false if the directory is not available.
+     */
+    private boolean ensureIndexed() {
+        if (indexed) return available;
+        indexed = true;
+        available = directory.isDirectory() || directory.mkdirs();
+        if (!available) return false;
+
+        final File[] files = directory.listFiles();
+        if (null != files) {
+            // restore access order from modification times, which are updated on each read
+            Arrays.sort(files, new Comparator<File>() {
+                @Override
+                public int compare(File lhs, File rhs) {
+                    final long l = lhs.lastModified();
+                    final long r = rhs.lastModified();
+                    return l < r ? -1 : (l == r ? 0 : 1);
+                }
+            });
+            for (File file : files) {
+                final String name = file.getName();
+                if (name.endsWith(FILE_SUFFIX)) {
+                    entries.put(name, file.length());
+                    sizeBytes += file.length();
+                } else if (name.endsWith(TEMP_FILE_SUFFIX)) {
+                    // left behind by an interrupted write
+                    //noinspection ResultOfMethodCallIgnored
+                    file.delete();
+                }
+            }
+        }
+        trimToSize();
+        return true;
+    }
+
+    /**
+     * @param source       identifies the original image, e.g. a resource ID or URI.
+     * @param targetWidth  width of the view the entry was prepared for.
+     * @param targetHeight height of the view the entry was prepared for.
+     * @param reuse        mutable Bitmap to copy pixels into if it matches the entry's size and
+     *                     config, or null.
+     * @return cached Bitmap, which is reuse if it was suitable, or null if there is no valid entry.
+     */
+    public Bitmap get(String source, int targetWidth, int targetHeight,
+                      Bitmap.Config config, Bitmap reuse) {
+        final String key = createKey(source, targetWidth, targetHeight, config);
+        final String name = fileName(key);
+        synchronized (this) {
+            if (!ensureIndexed() || null == entries.get(name)) return null;
+        }
+
+        // entries are replaced by renaming, so an open file is never modified underneath
+        final File file = new File(directory, name);
+        try {
+            final FileInputStream in = new FileInputStream(file);
+            try {
+                final FileChannel channel = in.getChannel();
+                // heap buffer so that CRC32 can operate on its backing array; not kept, as it is
+                // as large as the bitmap
+                final ByteBuffer buffer = ByteBuffer.allocate((int) channel.size())
+                        .order(ByteOrder.LITTLE_ENDIAN);
+                while (buffer.hasRemaining()) {
+                    if (channel.read(buffer) < 0) break;
+                }
+                buffer.flip();
+
+                if (!isValid(buffer, key, config)) {
+                    remove(name);
+                    return null;
+                }
+                final int width = buffer.getInt(8);
+                final int height = buffer.getInt(12);
+
+                final Bitmap bitmap = null != reuse && reuse.isMutable()
+                        && reuse.getWidth() == width && reuse.getHeight() == height
+                        && reuse.getConfig() == config ?
+                        reuse : Bitmap.createBitmap(width, height, config);
+                if (buffer.remaining() != bitmap.getRowBytes() * height) {
+                    if (bitmap != reuse) bitmap.recycle();
+                    remove(name);
+                    return null;
+                }
+                bitmap.copyPixelsFromBuffer(buffer);
+                //noinspection ResultOfMethodCallIgnored
+                file.setLastModified(System.currentTimeMillis());
+                return bitmap;
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            remove(name);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the pixels of the given bitmap, replacing any existing entry.
+     *
+     * @param source       identifies the original image, e.g. a resource ID or URI.
+     * @param targetWidth  width of the view the bitmap was prepared for.
+     * @param targetHeight height of the view the bitmap was prepared for.
+     * @return true if the entry was written.
+     */
+    public boolean put(String source, int targetWidth, int targetHeight, Bitmap bitmap) {
+        final Bitmap.Config config = bitmap.getConfig();
+        if (0 == encodeConfig(config)) return false;
+        synchronized (this) {
+            if (!ensureIndexed()) return false;
+        }
+
+        final String key = createKey(source, targetWidth, targetHeight, config);
+        final byte[] keyBytes = key.getBytes(UTF_8);
+        final int pixelBytes = bitmap.getRowBytes() * bitmap.getHeight();
+        final int pixelsOffset = HEADER_SIZE + keyBytes.length;
+        final ByteBuffer buffer = ByteBuffer.allocate(pixelsOffset + pixelBytes)
+                .order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.position(pixelsOffset);
+        bitmap.copyPixelsToBuffer(buffer);
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), pixelsOffset, pixelBytes);
+        buffer.position(0);
+        buffer.putInt(MAGIC).putInt(VERSION)
+                .putInt(bitmap.getWidth()).putInt(bitmap.getHeight())
+                .putInt(encodeConfig(config)).putInt(pixelBytes)
+                .putLong(crc.getValue())
+                .putInt(keyBytes.length).put(keyBytes);
+        buffer.position(0);
+
+        final String name = fileName(key);
+        File temp = null;
+        try {
+            // unique, as the same entry may be written concurrently
+            temp = File.createTempFile(name, TEMP_FILE_SUFFIX, directory);
+            final FileOutputStream out = new FileOutputStream(temp);
+            try {
+                final FileChannel channel = out.getChannel();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            //noinspection ResultOfMethodCallIgnored
+            if (null != temp) temp.delete();
+            return false;
+        }
+
+        synchronized (this) {
+            // rename over any existing entry, so that readers never see a partially written one
+            if (!temp.renameTo(new File(directory, name))) {
+                //noinspection ResultOfMethodCallIgnored
+                temp.delete();
+                return false;
+            }
+            final Long previousSize = entries.put(name, (long) buffer.limit());
+            if (null != previousSize) sizeBytes -= previousSize;
+            sizeBytes += buffer.limit();
+            trimToSize();
+        }
+        return true;
+    }
+
+    /**
+     * Removes all entries.
+     */
+    public synchronized void clear() {
+        ensureIndexed();
+        for (String name : entries.keySet()) {
+            //noinspection ResultOfMethodCallIgnored
+            new File(directory, name).delete();
+        }
+        entries.clear();
+        sizeBytes = 0;
+    }
+
+    public synchronized long getSize() {
+        ensureIndexed();
+        return sizeBytes;
+    }
+
+    public long getMaxSize() {
+        return maxSizeBytes;
+    }
+
+    private boolean isValid(ByteBuffer buffer, String key, Bitmap.Config config) {
+        if (buffer.limit() < HEADER_SIZE) return false;
+        if (MAGIC != buffer.getInt(0) || VERSION != buffer.getInt(4)) return false;
+        if (buffer.getInt(8) <= 0 || buffer.getInt(12) <= 0) return false;
+        if (encodeConfig(config) != buffer.getInt(16)) return false;
+
+        final int pixelBytes = buffer.getInt(20);
+        final long checksum = buffer.getLong(24);
+        final int keyLength = buffer.getInt(32);
+        if (keyLength < 0 || pixelBytes < 0
+                || (long) HEADER_SIZE + keyLength + pixelBytes != buffer.limit()) return false;
+        // guards against file name hash collisions
+        if (!key.equals(new String(buffer.array(), HEADER_SIZE, keyLength, UTF_8))) return false;
+
+        final int pixelsOffset = HEADER_SIZE + keyLength;
+        final CRC32 crc = new CRC32();
+        crc.update(buffer.array(), pixelsOffset, pixelBytes);
+        if (checksum != crc.getValue()) return false;
+
+        buffer.position(pixelsOffset);
+        return true;
+    }
+
+    private synchronized void remove(String name) {
+        final Long size = entries.remove(name);
+        if (null != size) sizeBytes -= size;
+        //noinspection ResultOfMethodCallIgnored
+        new File(directory, name).delete();
+    }
+
+    private void trimToSize() {
+        final Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (sizeBytes > maxSizeBytes && iterator.hasNext()) {
+            final Map.Entry<String, Long> eldest = iterator.next();
+            sizeBytes -= eldest.getValue();
+            iterator.remove();
+            //noinspection ResultOfMethodCallIgnored
+            new File(directory, eldest.getKey()).delete();
+        }
+    }
+
+    private static String createKey(String source, int targetWidth, int targetHeight,
+                                    Bitmap.Config config) {
+        return source + '|' + targetWidth + 'x' + targetHeight + '|' + config;
+    }
+
+    private static String fileName(String key) {
+        try {
+            final byte[] digest = MessageDigest.getInstance("SHA-1").digest(key.getBytes(UTF_8));
+            final StringBuilder builder = new StringBuilder(digest.length * 2 + FILE_SUFFIX.length());
+            for (byte b : digest) {
+                builder.append(Character.forDigit((b >> 4) & 0xf, 16))
+                        .append(Character.forDigit(b & 0xf, 16));
+            }
+            return builder.append(FILE_SUFFIX).toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1 not available.", e);
+        }
+    }
+
+    /**
+     * @return stable identifier for supported configs, or 0 if the config cannot be cached.
+     */
+    private static int encodeConfig(Bitmap.Config config) {
+        if (null == config) return 0;
+        switch (config) {
+            case ARGB_8888:
+                return 1;
+            case RGB_565:
+                return 2;
+            default:
+                return 0;
+        }
+    }
+}
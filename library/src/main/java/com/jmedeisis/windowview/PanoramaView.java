@@ -0,0 +1,503 @@
+package com.jmedeisis.windowview;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.util.AttributeSet;
+import android.view.View;
+
+import com.jmedeisis.windowview.sensor.TiltSensor;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * A View that displays a horizontally wrapping 360&deg; panorama, e.g. an equirectangular photo,
+ * and pans it in response to device yaw. Turning around a full circle explores the full image.
+ * <p>
+ * The image is decoded lazily in vertical strips around the current heading. Decoded strips are
+ * held in a ring which is bounded to roughly two screens of pixels; strips behind the user are
+ * evicted first. Strips are prefetched in the direction the user is turning, based on the
+ * current yaw velocity. Requires API 10+.
+ */
+@TargetApi(Build.VERSION_CODES.GINGERBREAD_MR1)
+public class PanoramaView extends View implements TiltSensor.TiltListener {
+
+    /**
+     * Strips are sized to a fraction of the view width, so that few pixels outside the view are
+     * decoded at a time.
+     */
+    private static final int STRIPS_PER_SCREEN = 4;
+    /**
+     * Maximum decoded pixels held, in view widths.
+     */
+    private static final int SCREENS_HELD = 2;
+
+    private TiltTracker tracker;
+    /**
+     * Own tilt sensor, null until created. See {@link TiltTracker}.
+     */
+    protected TiltSensor sensor;
+    private float latestYaw;
+    private long latestYawTimeNs;
+    /**
+     * Smoothed yaw angular velocity, in degrees per second.
+     */
+    private float yawVelocity;
+    private static final float YAW_VELOCITY_SMOOTHING_FACTOR = 0.3f;
+
+    private static final long DEFAULT_PREFETCH_LOOKAHEAD_MS = 300;
+    private long prefetchLookaheadMs;
+    private PrefetchScheduler scheduler;
+
+    // accessed from the decode thread
+    private volatile BitmapRegionDecoder decoder;
+    private volatile int imageWidth;
+    private volatile int imageHeight;
+    private volatile int stripSourceWidth;
+    private volatile int sampleSize;
+    /**
+     * Scale from image pixels to view pixels.
+     */
+    private volatile float scale;
+    private volatile int stripHeight;
+
+    // strip layout, valid if ring is not null
+    private StripRing ring;
+    private int stripCount;
+    private float stripWidth;
+    private float panoramaWidth;
+    /**
+     * Strips visible during the previous and the current frame.
+     */
+    private boolean[] visibleStrips;
+    private boolean[] frameVisibleStrips;
+
+    private final RectF stripBounds = new RectF();
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    public PanoramaView(Context context) {
+        super(context);
+        init(context, null);
+    }
+
+    public PanoramaView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init(context, attrs);
+    }
+
+    public PanoramaView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(context, attrs);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public PanoramaView(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        super(context, attrs, defStyleAttr, defStyleRes);
+        init(context, attrs);
+    }
+
+    protected void init(Context context, AttributeSet attrs) {
+        // in AUTOMATIC mode, the tilt sensor is created once attached, keeping inflation cheap;
+        // the heading is relative to the orientation when tracking starts unless configured
+        // otherwise
+        tracker = new TiltTracker(this, this, "PanoramaView") {
+            @Override
+            void onSensorCreated(TiltSensor tiltSensor) {
+                sensor = tiltSensor;
+            }
+        };
+        prefetchLookaheadMs = DEFAULT_PREFETCH_LOOKAHEAD_MS;
+        scheduler = new PrefetchScheduler(new PrefetchScheduler.TileDecoder() {
+            @Override
+            public Bitmap decodeTile(int tile) {
+                return decodeStrip(tile);
+            }
+        }, new PrefetchScheduler.Callback() {
+            @Override
+            public void onTileDecoded(int tile, Bitmap bitmap) {
+                onStripDecoded(tile, bitmap);
+            }
+        });
+
+        if (null != attrs) {
+            final TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.wwv_WindowView);
+            tracker.readAttributes(a);
+            a.recycle();
+        }
+    }
+
+    /*
+     * LIFE-CYCLE
+     * See WindowView.
+     * ---------------------------------------------------------------------------------------------
+     */
+    @Override
+    public void onWindowFocusChanged(boolean hasWindowFocus) {
+        super.onWindowFocusChanged(hasWindowFocus);
+        tracker.onWindowFocusChanged(hasWindowFocus);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        tracker.onAttachedToWindow();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        tracker.onDetachedFromWindow();
+        // release decoded pixels, strips are decoded again once visible
+        invalidateStrips();
+    }
+
+    /*
+     * IMAGE
+     * ---------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * Sets the panorama image, e.g. a JPEG or PNG. Only the image header is read immediately.
+     *
+     * @param stream closed once read.
+     * @throws IOException if the image format is not supported or cannot be read.
+     */
+    public void setImage(InputStream stream) throws IOException {
+        try {
+            setDecoder(BitmapRegionDecoder.newInstance(stream, false));
+        } finally {
+            stream.close();
+        }
+    }
+
+    /**
+     * @param resId raw or drawable-nodpi resource of the panorama image.
+     * @throws IOException if the image format is not supported or cannot be read.
+     */
+    public void setImageResource(int resId) throws IOException {
+        setImage(getResources().openRawResource(resId));
+    }
+
+    /**
+     * @param path path of the panorama image file.
+     * @throws IOException if the image format is not supported or cannot be read.
+     */
+    public void setImageFile(String path) throws IOException {
+        setDecoder(BitmapRegionDecoder.newInstance(path, false));
+    }
+
+    private void setDecoder(BitmapRegionDecoder decoder) {
+        final BitmapRegionDecoder previous = this.decoder;
+        this.decoder = decoder;
+        imageWidth = decoder.getWidth();
+        imageHeight = decoder.getHeight();
+        invalidateStrips();
+        invalidate();
+        if (null != previous) {
+            // the decode thread may still be decoding a strip with it
+            scheduler.runOnDecodeThread(new Runnable() {
+                @Override
+                public void run() {
+                    previous.recycle();
+                }
+            });
+        }
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        invalidateStrips();
+    }
+
+    /**
+     * Discards all decoded strips. The strip layout is recomputed upon the next draw.
+     */
+    private void invalidateStrips() {
+        scheduler.reset(0);
+        if (null != ring) ring.clear();
+        ring = null;
+    }
+
+    /**
+     * Divides the image into strips for the current view size.
+     *
+     * @return false if there is no image or the view has not been laid out.
+     */
+    private boolean computeStrips() {
+        final int width = getWidth();
+        final int height = getHeight();
+        if (null == decoder || 0 == width || 0 == height) return false;
+
+        // fit image height to view height
+        scale = (float) height / imageHeight;
+        stripHeight = height;
+        panoramaWidth = imageWidth * scale;
+        sampleSize = 1;
+        while (imageHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+
+        stripSourceWidth = Math.max(1, (int) Math.ceil(width / STRIPS_PER_SCREEN / scale));
+        stripCount = (imageWidth + stripSourceWidth - 1) / stripSourceWidth;
+        stripWidth = stripSourceWidth * scale;
+
+        final int capacity = (int) Math.ceil(SCREENS_HELD * width / stripWidth);
+        ring = new StripRing(stripCount, Math.max(3, Math.min(capacity, stripCount)));
+        visibleStrips = new boolean[stripCount];
+        frameVisibleStrips = new boolean[stripCount];
+        scheduler.reset(stripCount);
+        return true;
+    }
+
+    /*
+     * DRAWING & PREFETCHING
+     * ---------------------------------------------------------------------------------------------
+     */
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        if (null == ring && !computeStrips()) return;
+
+        final float heading = getHeadingPosition();
+        final int headingIndex = getStripIndex(heading);
+        final float left = heading - getWidth() / 2f;
+        final float right = left + getWidth();
+        final float height = getHeight();
+
+        scheduler.beginPass();
+        Arrays.fill(frameVisibleStrips, false);
+
+        float x = left;
+        while (x < right) {
+            final float position = wrapPosition(x);
+            final int index = getStripIndex(position);
+            final float stripLeft = x - (position - index * stripWidth);
+            final float stripRight = stripLeft + Math.min(stripWidth, panoramaWidth - index * stripWidth);
+
+            final Bitmap strip = ring.get(index);
+            if (!visibleStrips[index] && !frameVisibleStrips[index]) {
+                scheduler.recordTileVisible(null != strip);
+            }
+            frameVisibleStrips[index] = true;
+            if (null != strip) {
+                stripBounds.set(stripLeft - left, 0, stripRight - left, height);
+                canvas.drawBitmap(strip, null, stripBounds, paint);
+            } else {
+                requestStrip(index, headingIndex, 0);
+            }
+            x = Math.max(stripRight, x + 1);
+        }
+
+        final boolean[] swap = visibleStrips;
+        visibleStrips = frameVisibleStrips;
+        frameVisibleStrips = swap;
+
+        // predict where the view will be within the lookahead, given the current yaw velocity
+        final float pixelsPerMs = Math.abs(yawVelocity) / 360f * panoramaWidth / 1000f;
+        final float lookahead = pixelsPerMs * prefetchLookaheadMs;
+        if (lookahead >= 1) {
+            if (yawVelocity < 0) {
+                // turning right pans right
+                prefetch(right, right + lookahead, right, pixelsPerMs, headingIndex);
+            } else {
+                prefetch(left - lookahead, left, left, pixelsPerMs, headingIndex);
+            }
+        }
+        // the strips just off-screen on either side are likely needed eventually
+        requestStrip(getStripIndex(wrapPosition(left - 1)), headingIndex, prefetchLookaheadMs);
+        requestStrip(getStripIndex(wrapPosition(right)), headingIndex, prefetchLookaheadMs);
+
+        scheduler.endPass();
+    }
+
+    /**
+     * Requests strips between the given positions, prioritised by estimated time until visible.
+     *
+     * @param edge        position of the view edge the strips are approaching.
+     * @param pixelsPerMs current panning speed.
+     */
+    private void prefetch(float from, float to, float edge, float pixelsPerMs, int headingIndex) {
+        float x = from;
+        while (x < to) {
+            final float position = wrapPosition(x);
+            final int index = getStripIndex(position);
+            final float stripLeft = x - (position - index * stripWidth);
+            final float stripRight = stripLeft + Math.min(stripWidth, panoramaWidth - index * stripWidth);
+            final float distance = stripRight <= edge ? edge - stripRight : Math.max(0, stripLeft - edge);
+            requestStrip(index, headingIndex, distance / pixelsPerMs);
+            x = Math.max(stripRight, x + 1);
+        }
+    }
+
+    /**
+     * @return horizontal position (in pixels) of the panorama at the center of the view for the
+     * latest yaw. Yaw is positive counter-clockwise, i.e. turning left pans left.
+     */
+    private float getHeadingPosition() {
+        return wrapPosition(-latestYaw / 360f * panoramaWidth);
+    }
+
+    private float wrapPosition(float x) {
+        x %= panoramaWidth;
+        return x < 0 ? x + panoramaWidth : x;
+    }
+
+    private int getStripIndex(float position) {
+        return Math.min((int) (position / stripWidth), stripCount - 1);
+    }
+
+    /**
+     * @param priority estimated time (in milliseconds) until the strip becomes visible.
+     */
+    private void requestStrip(int index, int headingIndex, float priority) {
+        if (ring.contains(index)) return;
+        // don't decode strips that would immediately be evicted
+        if (ring.distance(index, headingIndex) > ring.getCapacity() / 2) return;
+        scheduler.request(index, priority);
+    }
+
+    /**
+     * Called on the decode thread.
+     */
+    private Bitmap decodeStrip(int index) {
+        final BitmapRegionDecoder decoder = this.decoder;
+        if (null == decoder) return null;
+        final Rect region = new Rect(index * stripSourceWidth, 0,
+                Math.min((index + 1) * stripSourceWidth, imageWidth), imageHeight);
+        final BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize;
+        final Bitmap sampled;
+        try {
+            sampled = decoder.decodeRegion(region, options);
+        } catch (IllegalArgumentException e) {
+            // image was replaced meanwhile, region may be out of bounds; strip is discarded anyway
+            return null;
+        }
+        if (null == sampled) return null;
+
+        // the power-of-two sample size leaves up to twice the view size on each axis
+        final int width = Math.max(1, Math.round(region.width() * scale));
+        final int height = stripHeight;
+        if (sampled.getWidth() == width && sampled.getHeight() == height) return sampled;
+        final Bitmap strip = Bitmap.createScaledBitmap(sampled, width, height, true);
+        if (strip != sampled) sampled.recycle();
+        return strip;
+    }
+
+    private void onStripDecoded(int index, Bitmap strip) {
+        if (null == ring) {
+            strip.recycle();
+            return;
+        }
+        ring.put(index, strip, getStripIndex(getHeadingPosition()));
+        invalidate();
+    }
+
+    /**
+     * @param lookaheadMs how far ahead (in milliseconds) to predict the visible region when
+     *                    prefetching strips.
+     */
+    public void setPrefetchLookahead(long lookaheadMs) {
+        this.prefetchLookaheadMs = lookaheadMs;
+    }
+
+    public long getPrefetchLookahead() {
+        return prefetchLookaheadMs;
+    }
+
+    /**
+     * @return the scheduler decoding strips, e.g. to inspect its hit rate and late strip count.
+     */
+    public PrefetchScheduler getPrefetchScheduler() {
+        return scheduler;
+    }
+
+    /*
+     * SENSOR DATA
+     * ---------------------------------------------------------------------------------------------
+     */
+    public WindowView.TiltSensorMode getTiltSensorMode() {
+        return tracker.tiltSensorMode;
+    }
+
+    /**
+     * See {@link WindowView#startTiltTracking()}.
+     */
+    public void startTiltTracking() {
+        tracker.startTiltTracking();
+    }
+
+    /**
+     * See {@link WindowView#stopTiltTracking()}.
+     */
+    public void stopTiltTracking() {
+        tracker.stopTiltTracking();
+    }
+
+    /**
+     * Connect this PanoramaView to a separately managed TiltSensor.
+     * See {@link WindowView#attachTiltTracking(TiltSensor)}.
+     *
+     * @throws IllegalStateException if {@link #getTiltSensorMode()} is not
+     *                               {@link WindowView.TiltSensorMode#MANUAL}.
+     */
+    public void attachTiltTracking(TiltSensor externalSensor) {
+        tracker.attachTiltTracking(externalSensor);
+    }
+
+    public void detachTiltTracking(TiltSensor externalSensor) {
+        tracker.detachTiltTracking(externalSensor);
+    }
+
+    @Override
+    public void onTiltUpdate(float yaw, float pitch, float roll) {
+        final long nowNs = System.nanoTime();
+        if (0 != latestYawTimeNs && nowNs > latestYawTimeNs) {
+            float delta = (yaw - latestYaw) % 360;
+            if (delta >= 180) delta -= 360;
+            if (delta < -180) delta += 360;
+            final float velocity = delta / ((nowNs - latestYawTimeNs) * 1e-9f);
+            yawVelocity += YAW_VELOCITY_SMOOTHING_FACTOR * (velocity - yawVelocity);
+        }
+        this.latestYaw = yaw;
+        this.latestYawTimeNs = nowNs;
+        invalidate();
+    }
+
+    /**
+     * Re-centers the panorama on the current heading. Only applies to PanoramaView's own tilt
+     * sensor.
+     */
+    public void resetHeading(boolean immediate) {
+        tracker.resetOrientationOrigin(immediate);
+    }
+
+    /**
+     * See {@link WindowView#setSensorSamplingPeriod(int)}.
+     */
+    public void setSensorSamplingPeriod(int samplingPeriodUs) {
+        tracker.setSensorSamplingPeriod(samplingPeriodUs);
+    }
+
+    public int getSensorSamplingPeriod() {
+        return tracker.sensorSamplingPeriod;
+    }
+
+    /**
+     * See {@link WindowView#setTiltProfile(TiltSensor.Profile)}.
+     */
+    public void setTiltProfile(TiltSensor.Profile tiltProfile) {
+        tracker.setTiltProfile(tiltProfile);
+    }
+}
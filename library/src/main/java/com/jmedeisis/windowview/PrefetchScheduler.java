@@ -0,0 +1,300 @@
+package com.jmedeisis.windowview;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Schedules tile decodes on a bounded background executor, in order of priority. Tiles are
+ * identified by index, 0 to tile count - 1.
+ * <p>
+ * Decodes are requested in passes, typically one per frame: each pass requests every tile that is
+ * visible or predicted to become visible soon, with a priority reflecting how soon. Queued requests
+ * not renewed in a pass are stale and cancelled once the pass ends.
+ * <p>
+ * Hit rate and late tile counts are kept for tuning. Use from the main thread.
+ */
+public class PrefetchScheduler {
+
+    /**
+     * Decodes tiles. Called on a background thread.
+     */
+    public interface TileDecoder {
+        /**
+         * @return decoded tile, or null if it could not be decoded.
+         */
+        Bitmap decodeTile(int tile);
+    }
+
+    /**
+     * Interface for callback to be invoked on the main thread when a requested tile is decoded.
+     */
+    public interface Callback {
+        /**
+         * @param bitmap ownership passes to the callback.
+         */
+        void onTileDecoded(int tile, Bitmap bitmap);
+    }
+
+    private static final int DEFAULT_MAX_QUEUED = 8;
+    private static final long KEEP_ALIVE_SECONDS = 5;
+
+    private final TileDecoder decoder;
+    private final Callback callback;
+    private final Handler handler;
+    private final ThreadPoolExecutor executor;
+    private final int maxQueued;
+
+    /**
+     * Queued or running request by tile index.
+     */
+    private Task[] tasks = new Task[0];
+    private int generation;
+    private int pass;
+
+    // statistics
+    private int requestCount;
+    private int decodeCount;
+    private int cancelCount;
+    private int hitCount;
+    private int lateCount;
+
+    public PrefetchScheduler(TileDecoder decoder, Callback callback) {
+        this(decoder, callback, DEFAULT_MAX_QUEUED);
+    }
+
+    /**
+     * @param maxQueued maximum number of requests queued at once. When exceeded, the request
+     *                  with the lowest priority is dropped.
+     */
+    public PrefetchScheduler(TileDecoder decoder, Callback callback, int maxQueued) {
+        this.decoder = decoder;
+        this.callback = callback;
+        this.maxQueued = maxQueued;
+        this.handler = new Handler(Looper.getMainLooper());
+        // a single worker; region decoders generally serialise decodes anyway
+        this.executor = new ThreadPoolExecutor(1, 1, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(@NonNull Runnable r) {
+                Thread thread = new Thread(r, "WindowView prefetch");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Cancels all requests and sets the number of tiles for subsequent requests.
+     */
+    public void reset(int tileCount) {
+        for (Task task : tasks) {
+            if (null != task) cancel(task);
+        }
+        tasks = new Task[tileCount];
+        generation++;
+    }
+
+    /**
+     * Begins a new pass of requests. See {@link #endPass()}.
+     */
+    public void beginPass() {
+        pass++;
+    }
+
+    /**
+     * Requests a tile to be decoded, unless it is already queued or being decoded.
+     *
+     * @param priority e.g. estimated time (in milliseconds) until the tile becomes visible.
+     *                 Lower values are decoded first.
+     */
+    public void request(int tile, float priority) {
+        Task task = tasks[tile];
+        if (null != task) {
+            task.pass = pass;
+            if (task.started || priority == task.priority) return;
+            // re-queue with updated priority
+            if (!executor.remove(task)) return;
+            task.priority = priority;
+            executor.execute(task);
+            return;
+        }
+
+        if (getQueuedCount() >= maxQueued) {
+            Task lowest = null;
+            for (Task queued : tasks) {
+                if (null != queued && !queued.started
+                        && (null == lowest || queued.priority > lowest.priority)) {
+                    lowest = queued;
+                }
+            }
+            if (null == lowest || lowest.priority <= priority) return;
+            cancel(lowest);
+        }
+
+        task = new Task(tile, priority, generation);
+        task.pass = pass;
+        tasks[tile] = task;
+        requestCount++;
+        executor.execute(task);
+    }
+
+    /**
+     * Cancels queued requests that were not renewed since {@link #beginPass()}.
+     */
+    public void endPass() {
+        for (Task task : tasks) {
+            if (null != task && !task.started && task.pass != pass) cancel(task);
+        }
+    }
+
+    /**
+     * Runs the given action on the decode thread once the decode in progress, if any, has
+     * finished, ahead of any queued decodes. E.g. to release a resource the {@link TileDecoder}
+     * may still be using.
+     */
+    public void runOnDecodeThread(final Runnable action) {
+        executor.execute(new Task(-1, Float.NEGATIVE_INFINITY, generation) {
+            @Override
+            public void run() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * @return true if the tile is queued or being decoded.
+     */
+    public boolean isRequested(int tile) {
+        return null != tasks[tile];
+    }
+
+    private int getQueuedCount() {
+        int count = 0;
+        for (Task task : tasks) {
+            if (null != task && !task.started) count++;
+        }
+        return count;
+    }
+
+    private void cancel(Task task) {
+        task.cancelled = true;
+        executor.remove(task);
+        if (tasks[task.tile] == task) tasks[task.tile] = null;
+        cancelCount++;
+    }
+
+    private void deliver(Task task, Bitmap bitmap) {
+        if (task.cancelled || task.generation != generation) {
+            if (null != bitmap) bitmap.recycle();
+            return;
+        }
+        tasks[task.tile] = null;
+        if (null == bitmap) return;
+        decodeCount++;
+        callback.onTileDecoded(task.tile, bitmap);
+    }
+
+    private class Task implements Runnable, Comparable<Task> {
+        final int tile;
+        final int generation;
+        float priority;
+        int pass;
+        volatile boolean started;
+        volatile boolean cancelled;
+
+        Task(int tile, float priority, int generation) {
+            this.tile = tile;
+            this.priority = priority;
+            this.generation = generation;
+        }
+
+        @Override
+        public void run() {
+            started = true;
+            if (cancelled) return;
+            final Bitmap bitmap = decoder.decodeTile(tile);
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    deliver(Task.this, bitmap);
+                }
+            });
+        }
+
+        @Override
+        public int compareTo(@NonNull Task another) {
+            return Float.compare(priority, another.priority);
+        }
+    }
+
+    /*
+     * STATISTICS
+     * ---------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * Records that a tile has just become visible.
+     *
+     * @param ready true if the tile was already decoded, i.e. prefetched in time.
+     */
+    public void recordTileVisible(boolean ready) {
+        if (ready) {
+            hitCount++;
+        } else {
+            lateCount++;
+        }
+    }
+
+    /**
+     * @return number of tiles that were decoded by the time they became visible.
+     */
+    public int getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return number of tiles that were not yet decoded when they became visible.
+     */
+    public int getLateCount() {
+        return lateCount;
+    }
+
+    /**
+     * @return fraction of tiles that were decoded by the time they became visible, 0-1.
+     */
+    public float getHitRate() {
+        final int total = hitCount + lateCount;
+        return 0 == total ? 1 : (float) hitCount / total;
+    }
+
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    public int getDecodeCount() {
+        return decodeCount;
+    }
+
+    /**
+     * @return number of requests cancelled, e.g. because they became stale.
+     */
+    public int getCancelCount() {
+        return cancelCount;
+    }
+
+    public void resetStatistics() {
+        requestCount = 0;
+        decodeCount = 0;
+        cancelCount = 0;
+        hitCount = 0;
+        lateCount = 0;
+    }
+}
@@ -0,0 +1,93 @@
+package com.jmedeisis.windowview;
+
+/**
+ * Shapes normalised tilt, i.e. tilt from the origin divided by the maximum angle, into a
+ * normalised image offset in [-1, 1], with an optional dead zone, ease-in and soft limit. The curve
+ * is baked into a lookup table whenever it is configured, so that mapping tilt costs a single table
+ * interpolation however the curve is shaped.
+ * <p>
+ * With the defaults, the mapping is linear and clamped at the maximum angle.
+ */
+class ResponseCurve {
+
+    private static final float DEFAULT_DEAD_ZONE = 0;
+    private static final float DEFAULT_EXPONENT = 1;
+    private static final float DEFAULT_SOFT_LIMIT = 0;
+
+    /**
+     * The table covers normalised tilt from 0 to MAX_INPUT; beyond, the last entry applies.
+     * Normalised tilt of 1, i.e. the maximum angle, falls exactly on an entry, so the default
+     * curve's clamp is reproduced exactly.
+     */
+    private static final int MAX_INPUT = 2;
+    private static final int STEPS_PER_UNIT = 64;
+
+    private final float[] table = new float[MAX_INPUT * STEPS_PER_UNIT + 1];
+
+    float deadZone;
+    float exponent;
+    float softLimit;
+
+    ResponseCurve() {
+        set(DEFAULT_DEAD_ZONE, DEFAULT_EXPONENT, DEFAULT_SOFT_LIMIT);
+    }
+
+    /**
+     * @param deadZone  fraction (0-1) of the maximum angle around the origin within which the
+     *                  offset stays 0.
+     * @param exponent  shape of the response beyond the dead zone. 1 for linear, greater than 1 to
+     *                  ease in, i.e. respond gently to small tilts and increasingly to larger ones.
+     * @param softLimit fraction (0-1) of the offset range over which the offset eases into its
+     *                  limit, rubber-banding past the maximum angle instead of stopping abruptly.
+     *                  0 for a hard stop.
+     * @throws IllegalArgumentException if any parameter is out of range.
+     */
+    void set(float deadZone, float exponent, float softLimit) {
+        if (!(deadZone >= 0 && deadZone < 1)) {
+            throw new IllegalArgumentException("Dead zone must be at least 0 and less than 1.");
+        }
+        if (!(exponent > 0)) {
+            throw new IllegalArgumentException("Exponent must be positive.");
+        }
+        if (!(softLimit >= 0 && softLimit < 1)) {
+            throw new IllegalArgumentException("Soft limit must be at least 0 and less than 1.");
+        }
+        this.deadZone = deadZone;
+        this.exponent = exponent;
+        this.softLimit = softLimit;
+
+        for (int i = 0; i < table.length; i++) {
+            table[i] = evaluate((float) i / STEPS_PER_UNIT);
+        }
+    }
+
+    /**
+     * @param tilt normalised tilt, positive or negative.
+     * @return normalised offset in [-1, 1], of the same sign.
+     */
+    float map(float tilt) {
+        final float position = Math.abs(tilt) * STEPS_PER_UNIT;
+        final int index = (int) position;
+        final float offset;
+        if (index >= table.length - 1) {
+            offset = table[table.length - 1];
+        } else {
+            offset = table[index] + (position - index) * (table[index + 1] - table[index]);
+        }
+        return tilt < 0 ? -offset : offset;
+    }
+
+    /**
+     * @param tilt normalised tilt, at least 0.
+     */
+    private float evaluate(float tilt) {
+        if (tilt <= deadZone) return 0;
+        final float shaped = (float) Math.pow((tilt - deadZone) / (1 - deadZone), exponent);
+        if (0 == softLimit) return Math.min(shaped, 1);
+
+        // beyond the knee, approach 1 exponentially, continuing the slope of the curve
+        final float knee = 1 - softLimit;
+        if (shaped <= knee) return shaped;
+        return knee + softLimit * (1 - (float) Math.exp(-(shaped - knee) / softLimit));
+    }
+}
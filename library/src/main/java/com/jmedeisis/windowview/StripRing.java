@@ -0,0 +1,100 @@
+package com.jmedeisis.windowview;
+
+import android.graphics.Bitmap;
+
+/**
+ * Fixed-capacity cache of decoded vertical strips of a horizontally wrapping image. When full,
+ * the strip furthest from the current heading (i.e. behind the user) is evicted.
+ * <p>
+ * Not thread-safe; use from the main thread.
+ */
+class StripRing {
+
+    private final int stripCount;
+    private final int[] indices;
+    private final Bitmap[] bitmaps;
+    private int size;
+
+    /**
+     * @param stripCount total number of strips the image is divided into.
+     * @param capacity   maximum number of strips held at once.
+     */
+    StripRing(int stripCount, int capacity) {
+        this.stripCount = stripCount;
+        this.indices = new int[capacity];
+        this.bitmaps = new Bitmap[capacity];
+    }
+
+    int getCapacity() {
+        return bitmaps.length;
+    }
+
+    /**
+     * @return decoded strip, or null if not held.
+     */
+    Bitmap get(int index) {
+        for (int i = 0; i < size; i++) {
+            if (indices[i] == index) return bitmaps[i];
+        }
+        return null;
+    }
+
+    boolean contains(int index) {
+        return null != get(index);
+    }
+
+    /**
+     * Adds a decoded strip, evicting (and recycling) the strip furthest from the given heading
+     * strip if full.
+     */
+    void put(int index, Bitmap bitmap, int headingIndex) {
+        for (int i = 0; i < size; i++) {
+            if (indices[i] == index) {
+                if (bitmaps[i] != bitmap) bitmaps[i].recycle();
+                bitmaps[i] = bitmap;
+                return;
+            }
+        }
+        int slot = size;
+        if (size == bitmaps.length) {
+            slot = 0;
+            int furthest = -1;
+            for (int i = 0; i < size; i++) {
+                final int distance = distance(indices[i], headingIndex);
+                if (distance > furthest) {
+                    furthest = distance;
+                    slot = i;
+                }
+            }
+            if (distance(index, headingIndex) > furthest) {
+                // new strip is further behind than any held strip
+                bitmap.recycle();
+                return;
+            }
+            bitmaps[slot].recycle();
+        } else {
+            size++;
+        }
+        indices[slot] = index;
+        bitmaps[slot] = bitmap;
+    }
+
+    /**
+     * Evicts and recycles all strips.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            bitmaps[i].recycle();
+            bitmaps[i] = null;
+        }
+        size = 0;
+    }
+
+    /**
+     * @return number of strips between the given strips, going around the shorter way.
+     */
+    int distance(int index, int otherIndex) {
+        final int distance = Math.abs(index - otherIndex) % stripCount;
+        return Math.min(distance, stripCount - distance);
+    }
+}
@@ -0,0 +1,306 @@
+package com.jmedeisis.windowview;
+
+import android.content.res.TypedArray;
+import android.hardware.SensorManager;
+import android.view.View;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
+
+import com.jmedeisis.windowview.sensor.TiltSensor;
+
+/**
+ * Owns the tilt sensor of a view and ties it to the view's lifecycle as per its
+ * {@link WindowView.TiltSensorMode}. Holds the sensor configuration until the sensor is created,
+ * which in {@link WindowView.TiltSensorMode#AUTOMATIC} mode happens once the view is first
+ * attached, keeping inflation cheap.
+ * Shared by {@link WindowView}, {@link WindowSurfaceView} and {@link PanoramaView}.
+ * <p>
+ * Use from the main thread.
+ */
+abstract class TiltTracker {
+
+    private static final int DEFAULT_SENSOR_SAMPLING_PERIOD_US = SensorManager.SENSOR_DELAY_GAME;
+    private static final WindowView.TiltSensorMode DEFAULT_TILT_SENSOR_MODE =
+            WindowView.TiltSensorMode.AUTOMATIC;
+    private static final WindowView.OrientationMode DEFAULT_ORIENTATION_MODE =
+            WindowView.OrientationMode.RELATIVE;
+
+    private final View view;
+    /**
+     * Registered with the sensor, be it own or external.
+     */
+    private final TiltSensor.TiltListener listener;
+    /**
+     * Name of the owning view, for error messages.
+     */
+    private final String viewName;
+
+    int sensorSamplingPeriod;
+    /**
+     * Null if not set, in which case the tilt sensor's defaults apply.
+     */
+    TiltSensor.Profile tiltProfile;
+    WindowView.TiltSensorMode tiltSensorMode;
+    WindowView.OrientationMode orientationMode;
+
+    long originResetDurationMs;
+    private Interpolator originResetInterpolator;
+    /**
+     * If false, {@link TiltSensor}'s default origin reset animation is used.
+     */
+    private boolean customOriginResetAnimation;
+
+    private TiltSensor sensor;
+    /**
+     * Restored {@link TiltSensor#saveState()}, pending until {@link #sensor} is initialised.
+     */
+    private float[] pendingSensorState;
+
+    TiltTracker(View view, TiltSensor.TiltListener listener, String viewName) {
+        this.view = view;
+        this.listener = listener;
+        this.viewName = viewName;
+        sensorSamplingPeriod = DEFAULT_SENSOR_SAMPLING_PERIOD_US;
+        tiltSensorMode = DEFAULT_TILT_SENSOR_MODE;
+        orientationMode = DEFAULT_ORIENTATION_MODE;
+        originResetDurationMs = TiltSensor.DEFAULT_ORIGIN_RESET_DURATION_MS;
+    }
+
+    /**
+     * Called whenever the view's own sensor is created.
+     */
+    abstract void onSensorCreated(TiltSensor sensor);
+
+    /**
+     * Reads sensor-related attributes of {@link R.styleable#wwv_WindowView}.
+     */
+    void readAttributes(TypedArray a) {
+        int tiltProfileIndex = a.getInt(R.styleable.wwv_WindowView_wwv_tilt_profile, -1);
+        if (tiltProfileIndex >= 0) {
+            tiltProfile = TiltSensor.Profile.values()[tiltProfileIndex];
+            sensorSamplingPeriod = tiltProfile.getSamplingPeriod();
+        }
+        sensorSamplingPeriod = a.getInt(R.styleable.wwv_WindowView_wwv_sensor_sampling_period,
+                sensorSamplingPeriod);
+
+        int tiltSensorModeIndex = a.getInt(R.styleable.wwv_WindowView_wwv_tilt_sensor_mode, -1);
+        if (tiltSensorModeIndex >= 0) {
+            tiltSensorMode = WindowView.TiltSensorMode.values()[tiltSensorModeIndex];
+        }
+        int orientationModeIndex = a.getInt(R.styleable.wwv_WindowView_wwv_orientation_mode, -1);
+        if (orientationModeIndex >= 0) {
+            orientationMode = WindowView.OrientationMode.values()[orientationModeIndex];
+        }
+
+        int originResetDuration = a.getInt(
+                R.styleable.wwv_WindowView_wwv_origin_reset_duration, -1);
+        if (originResetDuration >= 0) {
+            originResetDurationMs = originResetDuration;
+            originResetInterpolator = new DecelerateInterpolator();
+            customOriginResetAnimation = true;
+        }
+    }
+
+    /**
+     * @return the view's own sensor, null if it has none (yet).
+     */
+    TiltSensor getSensor() {
+        return sensor;
+    }
+
+    /*
+     * LIFE-CYCLE
+     * See WindowView.
+     * ---------------------------------------------------------------------------------------------
+     */
+    void onWindowFocusChanged(boolean hasWindowFocus) {
+        if (null != sensor && WindowView.TiltSensorMode.AUTOMATIC == tiltSensorMode) {
+            if (hasWindowFocus) {
+                sensor.startTracking(sensorSamplingPeriod);
+            } else {
+                sensor.stopTracking();
+            }
+        }
+    }
+
+    void onAttachedToWindow() {
+        if (!view.isInEditMode() && WindowView.TiltSensorMode.AUTOMATIC == tiltSensorMode) {
+            if (null == sensor) initSensor();
+            sensor.startTracking(sensorSamplingPeriod);
+        }
+    }
+
+    void onDetachedFromWindow() {
+        if (null != sensor && WindowView.TiltSensorMode.AUTOMATIC == tiltSensorMode) {
+            sensor.stopTracking();
+        }
+    }
+
+    /*
+     * SENSOR
+     * ---------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * Creates the tilt sensor ahead of attachment if in {@link WindowView.TiltSensorMode#AUTOMATIC}
+     * mode, so that it can be configured.
+     */
+    void ensureAutomaticSensor() {
+        if (null == sensor && WindowView.TiltSensorMode.AUTOMATIC == tiltSensorMode
+                && !view.isInEditMode()) {
+            initSensor();
+        }
+    }
+
+    private void initSensor() {
+        sensor = new TiltSensor(view.getContext(),
+                orientationMode == WindowView.OrientationMode.RELATIVE);
+        if (null != tiltProfile) sensor.setProfile(tiltProfile);
+        addListenerTo(sensor);
+        applyOriginResetAnimation();
+        if (null != pendingSensorState) {
+            sensor.restoreState(pendingSensorState);
+            pendingSensorState = null;
+        }
+        onSensorCreated(sensor);
+    }
+
+    /**
+     * Registers for tilt updates, limited as per the {@link TiltSensor.Profile} if one is set.
+     */
+    private void addListenerTo(TiltSensor tiltSensor) {
+        if (null == tiltProfile) {
+            tiltSensor.addListener(listener);
+        } else {
+            tiltSensor.addListener(listener, tiltProfile.getMinUpdateDelta(),
+                    tiltProfile.getMaxUpdateRate());
+        }
+    }
+
+    void startTiltTracking() {
+        if (null == sensor) {
+            // this will be the case if tiltSensorMode == TiltSensorMode.MANUAL
+            initSensor();
+        } else if (sensor.isTracking()) {
+            return;
+        }
+        sensor.startTracking(sensorSamplingPeriod);
+    }
+
+    void stopTiltTracking() {
+        if (null == sensor && WindowView.TiltSensorMode.AUTOMATIC == tiltSensorMode) {
+            // not attached yet, so not tracking
+            return;
+        }
+        requireSensor("stop tracking");
+        sensor.stopTracking();
+    }
+
+    void attachTiltTracking(TiltSensor externalSensor) {
+        if (WindowView.TiltSensorMode.MANUAL != tiltSensorMode) {
+            // the view has its own tilt sensor, cannot attach external one.
+            throw new IllegalStateException(
+                    "External tilt sensor can only be attached if tilt sensor mode is set to MANUAL.");
+        }
+        if (null != sensor) {
+            // will be the case if #startTiltTracking() was called previously
+            if (sensor.isTracking()) sensor.stopTracking();
+        }
+        addListenerTo(externalSensor);
+    }
+
+    void detachTiltTracking(TiltSensor externalSensor) {
+        externalSensor.removeListener(listener);
+    }
+
+    void addTiltListener(TiltSensor.TiltListener tiltListener) {
+        ensureAutomaticSensor();
+        requireSensor("add listener");
+        sensor.addListener(tiltListener);
+    }
+
+    void removeTiltListener(TiltSensor.TiltListener tiltListener) {
+        if (null == sensor && WindowView.TiltSensorMode.AUTOMATIC == tiltSensorMode) return;
+        requireSensor("remove listener");
+        sensor.removeListener(tiltListener);
+    }
+
+    void resetOrientationOrigin(boolean immediate) {
+        ensureAutomaticSensor();
+        requireSensor("reset orientation origin");
+        sensor.resetOrigin(immediate);
+    }
+
+    private void requireSensor(String action) {
+        if (null == sensor) {
+            throw new IllegalStateException(
+                    viewName + " does not have its own tilt sensor, cannot " + action + ".");
+        }
+    }
+
+    /*
+     * CONFIGURATION
+     * ---------------------------------------------------------------------------------------------
+     */
+    void setOriginResetAnimation(long durationMs, Interpolator interpolator) {
+        this.originResetDurationMs = durationMs;
+        this.originResetInterpolator = interpolator;
+        this.customOriginResetAnimation = true;
+        applyOriginResetAnimation();
+    }
+
+    private void applyOriginResetAnimation() {
+        if (null == sensor || !customOriginResetAnimation) return;
+        sensor.setOriginResetAnimation(originResetDurationMs, originResetInterpolator);
+    }
+
+    void setOrientationMode(WindowView.OrientationMode orientationMode) {
+        this.orientationMode = orientationMode;
+        if (null != sensor) {
+            sensor.setTrackRelativeOrientation(orientationMode == WindowView.OrientationMode.RELATIVE);
+            sensor.resetOrigin(true);
+        }
+    }
+
+    void setSensorSamplingPeriod(int samplingPeriodUs) {
+        this.sensorSamplingPeriod = samplingPeriodUs;
+        if (null != sensor && sensor.isTracking()) {
+            sensor.stopTracking();
+            sensor.startTracking(this.sensorSamplingPeriod);
+        }
+    }
+
+    void setTiltProfile(TiltSensor.Profile tiltProfile) {
+        this.tiltProfile = tiltProfile;
+        this.sensorSamplingPeriod = tiltProfile.getSamplingPeriod();
+        if (null != sensor) {
+            sensor.setProfile(tiltProfile);
+            sensor.removeListener(listener);
+            addListenerTo(sensor);
+        }
+    }
+
+    /*
+     * INSTANCE STATE
+     * ---------------------------------------------------------------------------------------------
+     */
+
+    /**
+     * @return see {@link TiltSensor#saveState()}, null if there is no own sensor or state.
+     */
+    float[] saveState() {
+        return null != sensor ? sensor.saveState() : pendingSensorState;
+    }
+
+    /**
+     * Restores the given state into the own sensor, or once it is created.
+     */
+    void restoreState(float[] state) {
+        if (null == state) return;
+        if (null != sensor) {
+            sensor.restoreState(state);
+        } else {
+            pendingSensorState = state;
+        }
+    }
+}
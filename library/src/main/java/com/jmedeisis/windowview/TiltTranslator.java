@@ -0,0 +1,139 @@
+package com.jmedeisis.windowview;
+
+import android.content.res.TypedArray;
+
+/**
+ * Maps device tilt to image translation for a {@link WindowView.TranslateMode} and limits, given
+ * the dimensions of a view and the CENTER_CROP-scaled image it displays.
+ * Shared by {@link WindowView} and {@link WindowSurfaceView}.
+ */
+class TiltTranslator {
+
+    private static final float DEFAULT_MAX_PITCH_DEGREES = 30;
+    private static final float DEFAULT_MAX_ROLL_DEGREES = 30;
+    private static final float DEFAULT_HORIZONTAL_ORIGIN_DEGREES = 0;
+    private static final float DEFAULT_VERTICAL_ORIGIN_DEGREES = 0;
+    private static final float DEFAULT_MAX_CONSTANT_TRANSLATION_DP = 150;
+    private static final WindowView.TranslateMode DEFAULT_TRANSLATE_MODE =
+            WindowView.TranslateMode.PROPORTIONAL;
+
+    float maxPitchDeg;
+    float maxRollDeg;
+    float horizontalOriginDeg;
+    float verticalOriginDeg;
+    WindowView.TranslateMode translateMode;
+    float maxConstantTranslation;
+    final ResponseCurve responseCurve = new ResponseCurve();
+
+    // layout
+    boolean heightMatches;
+    float widthDifference;
+    float heightDifference;
+
+    /**
+     * @param density see {@link android.util.DisplayMetrics#density}.
+     */
+    TiltTranslator(float density) {
+        maxPitchDeg = DEFAULT_MAX_PITCH_DEGREES;
+        maxRollDeg = DEFAULT_MAX_ROLL_DEGREES;
+        verticalOriginDeg = DEFAULT_VERTICAL_ORIGIN_DEGREES;
+        horizontalOriginDeg = DEFAULT_HORIZONTAL_ORIGIN_DEGREES;
+        translateMode = DEFAULT_TRANSLATE_MODE;
+        maxConstantTranslation = DEFAULT_MAX_CONSTANT_TRANSLATION_DP * density;
+    }
+
+    /**
+     * Reads translation-related attributes of {@link R.styleable#wwv_WindowView}.
+     */
+    void readAttributes(TypedArray a) {
+        maxPitchDeg = a.getFloat(R.styleable.wwv_WindowView_wwv_max_pitch, maxPitchDeg);
+        maxRollDeg = a.getFloat(R.styleable.wwv_WindowView_wwv_max_roll, maxRollDeg);
+        verticalOriginDeg = a.getFloat(R.styleable.wwv_WindowView_wwv_vertical_origin,
+                verticalOriginDeg);
+        horizontalOriginDeg = a.getFloat(R.styleable.wwv_WindowView_wwv_horizontal_origin,
+                horizontalOriginDeg);
+
+        int translateModeIndex = a.getInt(R.styleable.wwv_WindowView_wwv_translate_mode, -1);
+        if (translateModeIndex >= 0) {
+            translateMode = WindowView.TranslateMode.values()[translateModeIndex];
+        }
+
+        maxConstantTranslation = a.getDimension(
+                R.styleable.wwv_WindowView_wwv_max_constant_translation,
+                maxConstantTranslation);
+
+        responseCurve.set(
+                a.getFloat(R.styleable.wwv_WindowView_wwv_response_dead_zone,
+                        responseCurve.deadZone),
+                a.getFloat(R.styleable.wwv_WindowView_wwv_response_exponent,
+                        responseCurve.exponent),
+                a.getFloat(R.styleable.wwv_WindowView_wwv_response_soft_limit,
+                        responseCurve.softLimit));
+    }
+
+    /**
+     * Recalculates how far the CENTER_CROP-scaled image extends beyond the view.
+     */
+    void setDimensions(float width, float height, float imageWidth, float imageHeight) {
+        heightMatches = !widthRatioGreater(width, height, imageWidth, imageHeight);
+
+        if (heightMatches) {
+            imageWidth *= height / imageHeight;
+            imageHeight = height;
+        } else {
+            imageHeight *= width / imageWidth;
+            imageWidth = width;
+        }
+        widthDifference = imageWidth - width;
+        heightDifference = imageHeight - height;
+    }
+
+    void clearDimensions() {
+        widthDifference = 0;
+        heightDifference = 0;
+    }
+
+    /**
+     * @param out [x, y] image translation (in pixels) for the given tilt.
+     */
+    void computeTranslation(float pitch, float roll, float[] out) {
+        computeTranslation(pitch, roll, out, 0);
+    }
+
+    /**
+     * @param out   receives the [x, y] image translation (in pixels) for the given tilt.
+     * @param index position of x in out.
+     */
+    void computeTranslation(float pitch, float roll, float[] out, int index) {
+        // -1 -> 1
+        float xOffset = 0f;
+        float yOffset = 0f;
+        if (heightMatches) {
+            // only let user tilt horizontally
+            xOffset = responseCurve.map((roll - horizontalOriginDeg) / maxRollDeg);
+        } else {
+            // only let user tilt vertically
+            yOffset = -responseCurve.map((pitch - verticalOriginDeg) / maxPitchDeg);
+        }
+        switch (translateMode) {
+            case CONSTANT:
+                out[index] = clampAbsoluteFloating(0, maxConstantTranslation * xOffset, widthDifference / 2);
+                out[index + 1] = clampAbsoluteFloating(0, maxConstantTranslation * yOffset, heightDifference / 2);
+                break;
+            case PROPORTIONAL:
+                out[index] = Math.round((widthDifference / 2) * xOffset);
+                out[index + 1] = Math.round((heightDifference / 2) * yOffset);
+                break;
+        }
+    }
+
+    static float clampAbsoluteFloating(float origin, float value, float maxAbsolute) {
+        return value < origin ?
+                Math.max(value, origin - maxAbsolute) : Math.min(value, origin + maxAbsolute);
+    }
+
+    private static boolean widthRatioGreater(float width, float height,
+                                             float otherWidth, float otherHeight) {
+        return height / otherHeight < width / otherWidth;
+    }
+}
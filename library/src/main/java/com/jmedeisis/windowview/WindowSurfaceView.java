@@ -0,0 +1,501 @@
+package com.jmedeisis.windowview;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.content.res.TypedArray;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.hardware.Sensor;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Parcelable;
+import android.util.AttributeSet;
+import android.view.SurfaceHolder;
+import android.view.SurfaceView;
+import android.view.animation.Interpolator;
+
+import com.jmedeisis.windowview.sensor.TiltSensor;
+
+/**
+ * Alternative to {@link WindowView} that draws the panned image from a dedicated render thread
+ * onto its own surface, so that panning stays smooth even when the UI thread is busy with layout
+ * or other work. Only the latest tilt snapshot is rendered; intermediate tilt updates received
+ * while a frame is being drawn are skipped.
+ * <p>
+ * Supports the same tilt and sensor configuration as {@link WindowView}, including its XML
+ * attributes, and likewise retains tilt state across re-creation. Displays a {@link Bitmap} set
+ * via {@link #setImageBitmap(Bitmap)} rather than a Drawable; asynchronous image loading, image
+ * pyramids and {@link WindowViewCoordinator} are specific to WindowView.
+ */
+public class WindowSurfaceView extends SurfaceView implements SurfaceHolder.Callback,
+        TiltSensor.TiltListener {
+
+    private TiltTracker tracker;
+    /**
+     * Own tilt sensor, null until created. See {@link TiltTracker}.
+     */
+    protected TiltSensor sensor;
+
+    /**
+     * Guards all state shared with {@link #renderThread}.
+     */
+    private final Object lock = new Object();
+    private TiltTranslator translator;
+    private Bitmap bitmap;
+    private float latestPitch;
+    private float latestRoll;
+    private int surfaceWidth;
+    private int surfaceHeight;
+    private boolean dirty;
+
+    private RenderThread renderThread;
+
+    public WindowSurfaceView(Context context) {
+        super(context);
+        init(context, null);
+    }
+
+    public WindowSurfaceView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        init(context, attrs);
+    }
+
+    public WindowSurfaceView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(context, attrs);
+    }
+
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public WindowSurfaceView(Context context, AttributeSet attrs, int defStyleAttr, int defStyleRes) {
+        super(context, attrs, defStyleAttr, defStyleRes);
+        init(context, attrs);
+    }
+
+    protected void init(Context context, AttributeSet attrs) {
+        translator = new TiltTranslator(getResources().getDisplayMetrics().density);
+        // in AUTOMATIC mode, the tilt sensor is created once attached, keeping inflation cheap
+        tracker = new TiltTracker(this, this, "WindowSurfaceView") {
+            @Override
+            void onSensorCreated(TiltSensor tiltSensor) {
+                sensor = tiltSensor;
+            }
+        };
+
+        if (null != attrs) {
+            final TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.wwv_WindowView);
+            tracker.readAttributes(a);
+            translator.readAttributes(a);
+            a.recycle();
+        }
+
+        getHolder().addCallback(this);
+    }
+
+    /*
+     * LIFE-CYCLE
+     * See WindowView.
+     * ---------------------------------------------------------------------------------------------
+     */
+    @Override
+    public void onWindowFocusChanged(boolean hasWindowFocus) {
+        super.onWindowFocusChanged(hasWindowFocus);
+        tracker.onWindowFocusChanged(hasWindowFocus);
+    }
+
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        tracker.onAttachedToWindow();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        tracker.onDetachedFromWindow();
+    }
+
+    /*
+     * INSTANCE STATE
+     * See WindowView.
+     * ---------------------------------------------------------------------------------------------
+     */
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        WindowView.SavedState state = new WindowView.SavedState(super.onSaveInstanceState());
+        synchronized (lock) {
+            state.latestPitch = latestPitch;
+            state.latestRoll = latestRoll;
+        }
+        state.sensorState = tracker.saveState();
+        return state;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof WindowView.SavedState)) {
+            super.onRestoreInstanceState(state);
+            return;
+        }
+        WindowView.SavedState savedState = (WindowView.SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        synchronized (lock) {
+            latestPitch = savedState.latestPitch;
+            latestRoll = savedState.latestRoll;
+            requestRender();
+        }
+        tracker.restoreState(savedState.sensorState);
+    }
+
+    /*
+     * SURFACE & RENDERING
+     * ---------------------------------------------------------------------------------------------
+     */
+    @Override
+    public void surfaceCreated(SurfaceHolder holder) {
+        renderThread = new RenderThread(holder);
+        renderThread.start();
+    }
+
+    @Override
+    public void surfaceChanged(SurfaceHolder holder, int format, int width, int height) {
+        synchronized (lock) {
+            surfaceWidth = width;
+            surfaceHeight = height;
+            recalculateImageDimensions();
+            requestRender();
+        }
+    }
+
+    @Override
+    public void surfaceDestroyed(SurfaceHolder holder) {
+        if (null == renderThread) return;
+        // the surface must not be drawn to once this method returns
+        renderThread.quit();
+        renderThread = null;
+    }
+
+    /**
+     * Sets the image to display. The Bitmap must not be recycled while displayed.
+     */
+    public void setImageBitmap(Bitmap bitmap) {
+        synchronized (lock) {
+            this.bitmap = bitmap;
+            recalculateImageDimensions();
+            requestRender();
+        }
+    }
+
+    public Bitmap getImageBitmap() {
+        synchronized (lock) {
+            return bitmap;
+        }
+    }
+
+    /**
+     * Must hold {@link #lock}.
+     */
+    private void recalculateImageDimensions() {
+        if (null == bitmap || 0 == surfaceWidth || 0 == surfaceHeight) {
+            translator.clearDimensions();
+            return;
+        }
+        translator.setDimensions(surfaceWidth, surfaceHeight,
+                bitmap.getWidth(), bitmap.getHeight());
+    }
+
+    /**
+     * Must hold {@link #lock}.
+     */
+    private void requestRender() {
+        dirty = true;
+        lock.notify();
+    }
+
+    private class RenderThread extends Thread {
+        private final SurfaceHolder holder;
+        private final Matrix matrix = new Matrix();
+        private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+        private final float[] translation = new float[2];
+        private boolean quit;
+
+        RenderThread(SurfaceHolder holder) {
+            super("WindowSurfaceView");
+            this.holder = holder;
+        }
+
+        void quit() {
+            synchronized (lock) {
+                quit = true;
+                lock.notify();
+            }
+            boolean interrupted = false;
+            while (true) {
+                try {
+                    join();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+            if (interrupted) Thread.currentThread().interrupt();
+        }
+
+        @Override
+        public void run() {
+            Bitmap frameBitmap;
+            int width;
+            int height;
+            while (true) {
+                // take a snapshot of the latest state
+                synchronized (lock) {
+                    while (!quit && (!dirty || 0 == surfaceWidth || 0 == surfaceHeight)) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+                    if (quit) return;
+                    dirty = false;
+                    frameBitmap = bitmap;
+                    width = surfaceWidth;
+                    height = surfaceHeight;
+                    translator.computeTranslation(latestPitch, latestRoll, translation);
+                }
+
+                final Canvas canvas = holder.lockCanvas();
+                if (null == canvas) continue;
+                try {
+                    canvas.drawColor(Color.BLACK);
+                    if (null != frameBitmap) {
+                        final float bitmapWidth = frameBitmap.getWidth();
+                        final float bitmapHeight = frameBitmap.getHeight();
+                        // CENTER_CROP
+                        final float scale = Math.max(width / bitmapWidth, height / bitmapHeight);
+                        matrix.setScale(scale, scale);
+                        matrix.postTranslate(
+                                (width - bitmapWidth * scale) / 2 + translation[0],
+                                (height - bitmapHeight * scale) / 2 + translation[1]);
+                        canvas.drawBitmap(frameBitmap, matrix, paint);
+                    }
+                } finally {
+                    holder.unlockCanvasAndPost(canvas);
+                }
+            }
+        }
+    }
+
+    /*
+     * CONFIGURATION
+     * See WindowView.
+     * ---------------------------------------------------------------------------------------------
+     */
+    public void setTranslateMode(WindowView.TranslateMode translateMode) {
+        synchronized (lock) {
+            translator.translateMode = translateMode;
+            requestRender();
+        }
+    }
+
+    public WindowView.TranslateMode getTranslateMode() {
+        synchronized (lock) {
+            return translator.translateMode;
+        }
+    }
+
+    public void setMaxConstantTranslation(float maxConstantTranslation) {
+        synchronized (lock) {
+            translator.maxConstantTranslation = maxConstantTranslation;
+            requestRender();
+        }
+    }
+
+    public float getMaxConstantTranslation() {
+        synchronized (lock) {
+            return translator.maxConstantTranslation;
+        }
+    }
+
+    public void setMaxPitch(float maxPitch) {
+        synchronized (lock) {
+            translator.maxPitchDeg = maxPitch;
+            requestRender();
+        }
+    }
+
+    public float getMaxPitch() {
+        synchronized (lock) {
+            return translator.maxPitchDeg;
+        }
+    }
+
+    public void setMaxRoll(float maxRoll) {
+        synchronized (lock) {
+            translator.maxRollDeg = maxRoll;
+            requestRender();
+        }
+    }
+
+    public float getMaxRoll() {
+        synchronized (lock) {
+            return translator.maxRollDeg;
+        }
+    }
+
+    public void setHorizontalOrigin(float horizontalOrigin) {
+        synchronized (lock) {
+            translator.horizontalOriginDeg = horizontalOrigin;
+            requestRender();
+        }
+    }
+
+    public float getHorizontalOrigin() {
+        synchronized (lock) {
+            return translator.horizontalOriginDeg;
+        }
+    }
+
+    public void setVerticalOrigin(float verticalOrigin) {
+        synchronized (lock) {
+            translator.verticalOriginDeg = verticalOrigin;
+            requestRender();
+        }
+    }
+
+    public float getVerticalOrigin() {
+        synchronized (lock) {
+            return translator.verticalOriginDeg;
+        }
+    }
+
+    public void setResponseCurve(float deadZone, float exponent, float softLimit) {
+        synchronized (lock) {
+            translator.responseCurve.set(deadZone, exponent, softLimit);
+            requestRender();
+        }
+    }
+
+    public float getResponseDeadZone() {
+        synchronized (lock) {
+            return translator.responseCurve.deadZone;
+        }
+    }
+
+    public float getResponseExponent() {
+        synchronized (lock) {
+            return translator.responseCurve.exponent;
+        }
+    }
+
+    public float getResponseSoftLimit() {
+        synchronized (lock) {
+            return translator.responseCurve.softLimit;
+        }
+    }
+
+    /*
+     * SENSOR DATA
+     * See WindowView.
+     * ---------------------------------------------------------------------------------------------
+     */
+    public WindowView.TiltSensorMode getTiltSensorMode() {
+        return tracker.tiltSensorMode;
+    }
+
+    /**
+     * See {@link WindowView#startTiltTracking()}.
+     */
+    public void startTiltTracking() {
+        tracker.startTiltTracking();
+    }
+
+    /**
+     * See {@link WindowView#stopTiltTracking()}.
+     */
+    public void stopTiltTracking() {
+        tracker.stopTiltTracking();
+    }
+
+    /**
+     * See {@link WindowView#attachTiltTracking(TiltSensor)}.
+     */
+    public void attachTiltTracking(TiltSensor externalSensor) {
+        tracker.attachTiltTracking(externalSensor);
+    }
+
+    public void detachTiltTracking(TiltSensor externalSensor) {
+        tracker.detachTiltTracking(externalSensor);
+    }
+
+    @Override
+    public void onTiltUpdate(float yaw, float pitch, float roll) {
+        synchronized (lock) {
+            latestPitch = pitch;
+            latestRoll = roll;
+            requestRender();
+        }
+    }
+
+    public void addTiltListener(TiltSensor.TiltListener listener) {
+        tracker.addTiltListener(listener);
+    }
+
+    public void removeTiltListener(TiltSensor.TiltListener listener) {
+        tracker.removeTiltListener(listener);
+    }
+
+    /**
+     * See {@link WindowView#resetOrientationOrigin(boolean)}.
+     */
+    public void resetOrientationOrigin(boolean immediate) {
+        tracker.resetOrientationOrigin(immediate);
+    }
+
+    /**
+     * See {@link WindowView#setOriginResetAnimation(long, Interpolator)}.
+     */
+    public void setOriginResetAnimation(long durationMs, Interpolator interpolator) {
+        tracker.setOriginResetAnimation(durationMs, interpolator);
+    }
+
+    public long getOriginResetDuration() {
+        return tracker.originResetDurationMs;
+    }
+
+    public void setOrientationMode(WindowView.OrientationMode orientationMode) {
+        tracker.setOrientationMode(orientationMode);
+    }
+
+    public WindowView.OrientationMode getOrientationMode() {
+        return tracker.orientationMode;
+    }
+
+    /**
+     * @param samplingPeriodUs see {@link SensorManager#registerListener(SensorEventListener, Sensor, int)},
+     *                         or {@link TiltSensor#SAMPLING_PERIOD_AUTO} to match the display
+     *                         refresh rate.
+     */
+    public void setSensorSamplingPeriod(int samplingPeriodUs) {
+        tracker.setSensorSamplingPeriod(samplingPeriodUs);
+    }
+
+    /**
+     * See {@link WindowView#setTiltProfile(TiltSensor.Profile)}. Rendering is limited to the
+     * profile's update rate.
+     */
+    public void setTiltProfile(TiltSensor.Profile tiltProfile) {
+        tracker.setTiltProfile(tiltProfile);
+    }
+
+    public TiltSensor.Profile getTiltProfile() {
+        return tracker.tiltProfile;
+    }
+
+    public int getSensorSamplingPeriod() {
+        return tracker.sensorSamplingPeriod;
+    }
+}
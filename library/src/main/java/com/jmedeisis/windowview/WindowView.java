@@ -3,37 +3,43 @@ package com.jmedeisis.windowview;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.content.res.TypedArray;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
 import android.graphics.drawable.Drawable;
 import android.hardware.Sensor;
 import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.net.Uri;
 import android.os.Build;
+import android.os.Parcel;
+import android.os.Parcelable;
+import android.os.SystemClock;
 import android.support.annotation.NonNull;
 import android.util.AttributeSet;
+import android.view.animation.Interpolator;
 import android.widget.ImageView;
 
+import com.jmedeisis.windowview.pyramid.PyramidImage;
 import com.jmedeisis.windowview.sensor.TiltSensor;
 
+import java.io.IOException;
+import java.util.concurrent.Executor;
+
 /**
  * An ImageView that automatically pans in response to device tilt.
  * Currently only supports {@link android.widget.ImageView.ScaleType#CENTER_CROP}.
  */
 public class WindowView extends ImageView implements TiltSensor.TiltListener {
 
-    private static final float DEFAULT_MAX_PITCH_DEGREES = 30;
-    private static final float DEFAULT_MAX_ROLL_DEGREES = 30;
-    private static final float DEFAULT_HORIZONTAL_ORIGIN_DEGREES = 0;
-    private static final float DEFAULT_VERTICAL_ORIGIN_DEGREES = 0;
     private float latestPitch;
     private float latestRoll;
-    private float maxPitchDeg;
-    private float maxRollDeg;
-    private float horizontalOriginDeg;
-    private float verticalOriginDeg;
-
-    private static final int DEFAULT_SENSOR_SAMPLING_PERIOD_US = SensorManager.SENSOR_DELAY_GAME;
-    private int sensorSamplingPeriod;
+    TiltTranslator translator;
+    /**
+     * Non-null while this view's translation is set by a {@link WindowViewCoordinator}.
+     */
+    WindowViewCoordinator coordinator;
+    private final float[] translation = new float[2];
 
     /**
      * Determines the basis in which device orientation is measured.
@@ -51,12 +57,6 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
         RELATIVE
     }
 
-    private static final OrientationMode DEFAULT_ORIENTATION_MODE = OrientationMode.RELATIVE;
-    private OrientationMode orientationMode;
-
-    private static final float DEFAULT_MAX_CONSTANT_TRANSLATION_DP = 150;
-    private float maxConstantTranslation;
-
     /**
      * Determines the relationship between change in device tilt and change in image translation.
      */
@@ -64,7 +64,9 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
         /**
          * The image is translated by a constant amount per unit of device tilt.
          * Generally preferable when viewing multiple adjacent WindowViews that have different
-         * contents but should move in tandem.
+         * contents but should move in tandem. See
+         * {@link WindowViewCoordinator#setLockTranslations(boolean)} to keep them in tandem once
+         * some reach the edge of their image.
          * <p>
          * Same amount of tilt will result in the same translation for two images of differing size.
          */
@@ -79,9 +81,6 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
         PROPORTIONAL
     }
 
-    private static final TranslateMode DEFAULT_TRANSLATE_MODE = TranslateMode.PROPORTIONAL;
-    private TranslateMode translateMode;
-
     /**
      * Determines when and how tilt motion tracking starts and stops.
      */
@@ -117,11 +116,27 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
         MANUAL
     }
 
-    private static final TiltSensorMode DEFAULT_TILT_SENSOR_MODE = TiltSensorMode.AUTOMATIC;
-    private TiltSensorMode tiltSensorMode;
-
+    private TiltTracker tracker;
+    /**
+     * Own tilt sensor, null until created. See {@link TiltTracker}.
+     */
     protected TiltSensor sensor;
 
+    private PyramidImage imagePyramid;
+    /**
+     * Level being displayed or assembled, -1 if none.
+     */
+    private int imagePyramidLevel = -1;
+    private AsyncImageLoader.Request imagePyramidLoad;
+    private boolean settingImagePyramidLevel;
+
+    private AsyncImageLoader.Source pendingImageSource;
+    private AsyncImageLoader.Request imageLoad;
+    private boolean settingLoadedImage;
+    private Executor imageLoadExecutor;
+    private BitmapDiskCache imageCache;
+    private OnImageLoadListener imageLoadListener;
+
     // layout
     protected boolean heightMatches;
     protected float widthDifference;
@@ -149,51 +164,22 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
     }
 
     protected void init(Context context, AttributeSet attrs) {
-        sensorSamplingPeriod = DEFAULT_SENSOR_SAMPLING_PERIOD_US;
-        maxPitchDeg = DEFAULT_MAX_PITCH_DEGREES;
-        maxRollDeg = DEFAULT_MAX_ROLL_DEGREES;
-        verticalOriginDeg = DEFAULT_VERTICAL_ORIGIN_DEGREES;
-        horizontalOriginDeg = DEFAULT_HORIZONTAL_ORIGIN_DEGREES;
-        tiltSensorMode = DEFAULT_TILT_SENSOR_MODE;
-        orientationMode = DEFAULT_ORIENTATION_MODE;
-        translateMode = DEFAULT_TRANSLATE_MODE;
-        maxConstantTranslation = DEFAULT_MAX_CONSTANT_TRANSLATION_DP *
-                getResources().getDisplayMetrics().density;
+        translator = new TiltTranslator(getResources().getDisplayMetrics().density);
+        // in AUTOMATIC mode, the tilt sensor is created once attached, keeping inflation cheap
+        tracker = new TiltTracker(this, this, "WindowView") {
+            @Override
+            void onSensorCreated(TiltSensor tiltSensor) {
+                sensor = tiltSensor;
+            }
+        };
 
         if (null != attrs) {
             final TypedArray a = context.obtainStyledAttributes(attrs, R.styleable.wwv_WindowView);
-            sensorSamplingPeriod = a.getInt(R.styleable.wwv_WindowView_wwv_sensor_sampling_period,
-                    sensorSamplingPeriod);
-            maxPitchDeg = a.getFloat(R.styleable.wwv_WindowView_wwv_max_pitch, maxPitchDeg);
-            maxRollDeg = a.getFloat(R.styleable.wwv_WindowView_wwv_max_roll, maxRollDeg);
-            verticalOriginDeg = a.getFloat(R.styleable.wwv_WindowView_wwv_vertical_origin,
-                    verticalOriginDeg);
-            horizontalOriginDeg = a.getFloat(R.styleable.wwv_WindowView_wwv_horizontal_origin,
-                    horizontalOriginDeg);
-
-            int tiltSensorModeIndex = a.getInt(R.styleable.wwv_WindowView_wwv_tilt_sensor_mode, -1);
-            if (tiltSensorModeIndex >= 0) {
-                tiltSensorMode = TiltSensorMode.values()[tiltSensorModeIndex];
-            }
-            int orientationModeIndex = a.getInt(R.styleable.wwv_WindowView_wwv_orientation_mode, -1);
-            if (orientationModeIndex >= 0) {
-                orientationMode = OrientationMode.values()[orientationModeIndex];
-            }
-            int translateModeIndex = a.getInt(R.styleable.wwv_WindowView_wwv_translate_mode, -1);
-            if (translateModeIndex >= 0) {
-                translateMode = TranslateMode.values()[translateModeIndex];
-            }
-
-            maxConstantTranslation = a.getDimension(
-                    R.styleable.wwv_WindowView_wwv_max_constant_translation,
-                    maxConstantTranslation);
+            tracker.readAttributes(a);
+            translator.readAttributes(a);
             a.recycle();
         }
 
-        if (!isInEditMode() && TiltSensorMode.AUTOMATIC == tiltSensorMode) {
-            initSensor();
-        }
-
         setScaleType(ScaleType.CENTER_CROP);
     }
 
@@ -210,29 +196,23 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
     @Override
     public void onWindowFocusChanged(boolean hasWindowFocus) {
         super.onWindowFocusChanged(hasWindowFocus);
-        if (null != sensor && TiltSensorMode.AUTOMATIC == tiltSensorMode) {
-            if (hasWindowFocus) {
-                sensor.startTracking(sensorSamplingPeriod);
-            } else {
-                sensor.stopTracking();
-            }
-        }
+        tracker.onWindowFocusChanged(hasWindowFocus);
     }
 
     @Override
     protected void onAttachedToWindow() {
         super.onAttachedToWindow();
-        if (!isInEditMode() && null != sensor && TiltSensorMode.AUTOMATIC == tiltSensorMode) {
-            sensor.startTracking(sensorSamplingPeriod);
-        }
+        tracker.onAttachedToWindow();
+        updateImagePyramidLevel();
+        startImageLoad();
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
-        if (null != sensor && TiltSensorMode.AUTOMATIC == tiltSensorMode) {
-            sensor.stopTracking();
-        }
+        tracker.onDetachedFromWindow();
+        // the pending source is kept, so loading restarts if re-attached
+        cancelImageLoad();
     }
 
     /*
@@ -241,81 +221,77 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
      */
     @Override
     protected void onDraw(@NonNull Canvas canvas) {
-        // -1 -> 1
-        float xOffset = 0f;
-        float yOffset = 0f;
-        if (heightMatches) {
-            // only let user tilt horizontally
-            xOffset = (-horizontalOriginDeg +
-                    clampAbsoluteFloating(horizontalOriginDeg, latestRoll, maxRollDeg)) / maxRollDeg;
-        } else {
-            // only let user tilt vertically
-            yOffset = (verticalOriginDeg -
-                    clampAbsoluteFloating(verticalOriginDeg, latestPitch, maxPitchDeg)) / maxPitchDeg;
+        if (null == coordinator) {
+            translator.computeTranslation(latestPitch, latestRoll, translation);
         }
         canvas.save();
-        switch (translateMode) {
-            case CONSTANT:
-                canvas.translate(
-                        clampAbsoluteFloating(0, maxConstantTranslation * xOffset, widthDifference / 2),
-                        clampAbsoluteFloating(0, maxConstantTranslation * yOffset, heightDifference / 2));
-                break;
-            case PROPORTIONAL:
-                canvas.translate(Math.round((widthDifference / 2) * xOffset),
-                        Math.round((heightDifference / 2) * yOffset));
-                break;
-        }
+        canvas.translate(translation[0], translation[1]);
         super.onDraw(canvas);
         canvas.restore();
     }
 
     protected float clampAbsoluteFloating(float origin, float value, float maxAbsolute) {
-        return value < origin ?
-                Math.max(value, origin - maxAbsolute) : Math.min(value, origin + maxAbsolute);
+        return TiltTranslator.clampAbsoluteFloating(origin, value, maxAbsolute);
+    }
+
+    /**
+     * @return horizontal image translation (in pixels) as of the latest {@link #onDraw(Canvas)},
+     * after the response curve and limits.
+     */
+    protected float getImageTranslationX() {
+        return translation[0];
+    }
+
+    /**
+     * @return vertical image translation (in pixels) as of the latest {@link #onDraw(Canvas)},
+     * after the response curve and limits.
+     */
+    protected float getImageTranslationY() {
+        return translation[1];
     }
 
     /**
      * See {@link TranslateMode}.
      */
     public void setTranslateMode(TranslateMode translateMode) {
-        this.translateMode = translateMode;
+        translator.translateMode = translateMode;
     }
 
     public TranslateMode getTranslateMode() {
-        return translateMode;
+        return translator.translateMode;
     }
 
     /**
      * Maximum image translation from center when using {@link TranslateMode#CONSTANT}.
      */
     public void setMaxConstantTranslation(float maxConstantTranslation) {
-        this.maxConstantTranslation = maxConstantTranslation;
+        translator.maxConstantTranslation = maxConstantTranslation;
     }
 
     public float getMaxConstantTranslation() {
-        return maxConstantTranslation;
+        return translator.maxConstantTranslation;
     }
 
     /**
      * Maximum angle (in degrees) from origin for vertical tilts.
      */
     public void setMaxPitch(float maxPitch) {
-        this.maxPitchDeg = maxPitch;
+        translator.maxPitchDeg = maxPitch;
     }
 
     public float getMaxPitch() {
-        return maxPitchDeg;
+        return translator.maxPitchDeg;
     }
 
     /**
      * Maximum angle (in degrees) from origin for horizontal tilts.
      */
     public void setMaxRoll(float maxRoll) {
-        this.maxRollDeg = maxRoll;
+        translator.maxRollDeg = maxRoll;
     }
 
     public float getMaxRoll() {
-        return maxRollDeg;
+        return translator.maxRollDeg;
     }
 
     /**
@@ -323,11 +299,11 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
      * is centered horizontally.
      */
     public void setHorizontalOrigin(float horizontalOrigin) {
-        this.horizontalOriginDeg = horizontalOrigin;
+        translator.horizontalOriginDeg = horizontalOrigin;
     }
 
     public float getHorizontalOrigin() {
-        return horizontalOriginDeg;
+        return translator.horizontalOriginDeg;
     }
 
     /**
@@ -335,59 +311,194 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
      * is centered vertically.
      */
     public void setVerticalOrigin(float verticalOrigin) {
-        this.verticalOriginDeg = verticalOrigin;
+        translator.verticalOriginDeg = verticalOrigin;
     }
 
     public float getVerticalOrigin() {
-        return verticalOriginDeg;
+        return translator.verticalOriginDeg;
+    }
+
+    /**
+     * Shapes how the image follows tilt between the origin and the maximum angles, in place of
+     * the default linear response that stops abruptly at the maximum angles.
+     *
+     * @param deadZone  fraction (0-1) of the maximum angles around the origin within which the
+     *                  image stays centered.
+     * @param exponent  1 for a linear response; greater than 1 to ease in, i.e. respond gently to
+     *                  small tilts and increasingly to larger ones.
+     * @param softLimit fraction (0-1) of the translation range over which the image eases into its
+     *                  limit, rubber-banding past the maximum angles. 0 for a hard stop.
+     * @throws IllegalArgumentException if any parameter is out of range.
+     */
+    public void setResponseCurve(float deadZone, float exponent, float softLimit) {
+        translator.responseCurve.set(deadZone, exponent, softLimit);
+    }
+
+    public float getResponseDeadZone() {
+        return translator.responseCurve.deadZone;
+    }
+
+    public float getResponseExponent() {
+        return translator.responseCurve.exponent;
+    }
+
+    public float getResponseSoftLimit() {
+        return translator.responseCurve.softLimit;
     }
 
     @Override
     public void setImageDrawable(Drawable drawable) {
+        onImageSet();
         super.setImageDrawable(drawable);
         recalculateImageDimensions();
     }
 
+    // ImageView does not route these through setImageDrawable() on all API levels
+
+    @Override
+    public void setImageResource(int resId) {
+        onImageSet();
+        super.setImageResource(resId);
+        recalculateImageDimensions();
+    }
+
+    @Override
+    public void setImageURI(Uri uri) {
+        onImageSet();
+        super.setImageURI(uri);
+        recalculateImageDimensions();
+    }
+
+    @Override
+    public void setImageBitmap(Bitmap bitmap) {
+        onImageSet();
+        super.setImageBitmap(bitmap);
+        recalculateImageDimensions();
+    }
+
+    /**
+     * Discards any image pyramid or pending asynchronous load superseded by a newly set image.
+     */
+    private void onImageSet() {
+        if (!settingImagePyramidLevel) {
+            imagePyramid = null;
+            imagePyramidLevel = -1;
+        }
+        if (!settingLoadedImage && !settingImagePyramidLevel) {
+            cancelImageLoad();
+            pendingImageSource = null;
+        }
+    }
+
+    /**
+     * Displays the level of a memory-mapped image pyramid that best matches the size of this view,
+     * re-selecting the level if the view is resized. Levels are assembled from tiles copied out of
+     * mapped memory, so no image decoding takes place; this happens on the executor set via
+     * {@link #setImageLoadExecutor(Executor)}, like asynchronous loads, and the current image
+     * remains until the level is ready.
+     * Setting a different image via any other method replaces the pyramid.
+     */
+    public void setImagePyramid(PyramidImage pyramid) {
+        if (null == pyramid) {
+            setImageDrawable(null);
+            return;
+        }
+        cancelImageLoad();
+        pendingImageSource = null;
+        imagePyramid = pyramid;
+        imagePyramidLevel = -1;
+        updateImagePyramidLevel();
+    }
+
+    public PyramidImage getImagePyramid() {
+        return imagePyramid;
+    }
+
+    private void updateImagePyramidLevel() {
+        if (null == imagePyramid || 0 == getWidth() || 0 == getHeight()) return;
+
+        final int level = imagePyramid.selectLevel(getWidth(), getHeight());
+        if (level == imagePyramidLevel) return;
+        if (null != imagePyramidLoad) imagePyramidLoad.cancel();
+        imagePyramidLevel = level;
+        imagePyramidLoad = AsyncImageLoader.loadPyramidLevel(imagePyramid, level,
+                null != imageLoadExecutor ? imageLoadExecutor : AsyncImageLoader.DEFAULT_EXECUTOR,
+                imagePyramidLoadCallback);
+    }
+
+    private final AsyncImageLoader.Callback imagePyramidLoadCallback =
+            new AsyncImageLoader.Callback() {
+                @Override
+                public void onLoaded(AsyncImageLoader.Request request, Bitmap bitmap) {
+                    if (request != imagePyramidLoad) {
+                        bitmap.recycle();
+                        return;
+                    }
+                    imagePyramidLoad = null;
+
+                    settingImagePyramidLevel = true;
+                    try {
+                        setImageBitmap(bitmap);
+                    } finally {
+                        settingImagePyramidLevel = false;
+                    }
+
+                    if (null != imageLoadListener) {
+                        final long now = SystemClock.uptimeMillis();
+                        imageLoadListener.onImageLoaded(request.startTime - request.requestTime,
+                                request.endTime - request.startTime, now - request.requestTime,
+                                false);
+                    }
+                }
+
+                @Override
+                public void onFailed(AsyncImageLoader.Request request, Throwable error) {
+                    if (request != imagePyramidLoad) return;
+                    imagePyramidLoad = null;
+                    // retried once the view is next resized or attached
+                    imagePyramidLevel = -1;
+                    if (null != imageLoadListener) {
+                        imageLoadListener.onImageLoadFailed(error);
+                    }
+                }
+            };
+
     @Override
     protected void onSizeChanged(int w, int h, int oldw, int oldh) {
         super.onSizeChanged(w, h, oldw, oldh);
+        updateImagePyramidLevel();
         recalculateImageDimensions();
+        startImageLoad();
     }
 
     private void recalculateImageDimensions() {
         Drawable drawable = getDrawable();
-        if (null == drawable) return;
-
-        ScaleType scaleType = getScaleType();
-        float width = getWidth();
-        float height = getHeight();
-        float imageWidth = drawable.getIntrinsicWidth();
-        float imageHeight = drawable.getIntrinsicHeight();
+        // ImageView sets android:src before init()
+        if (null == drawable || null == translator) return;
 
-        heightMatches = !widthRatioGreater(width, height, imageWidth, imageHeight);
-
-        switch (scaleType) {
+        switch (getScaleType()) {
             case CENTER_CROP:
-                if (heightMatches) {
-                    imageWidth *= height / imageHeight;
-                    imageHeight = height;
-                } else {
-                    imageWidth = width;
-                    imageHeight *= width / imageWidth;
-                }
-                widthDifference = imageWidth - width;
-                heightDifference = imageHeight - height;
+                translator.setDimensions(getWidth(), getHeight(),
+                        drawable.getIntrinsicWidth(), drawable.getIntrinsicHeight());
                 break;
             default:
-                widthDifference = 0;
-                heightDifference = 0;
+                translator.clearDimensions();
                 break;
         }
+        heightMatches = translator.heightMatches;
+        widthDifference = translator.widthDifference;
+        heightDifference = translator.heightDifference;
+        if (null != coordinator) coordinator.requestUpdate();
     }
 
-    private static boolean widthRatioGreater(float width, float height,
-                                             float otherWidth, float otherHeight) {
-        return height / otherHeight < width / otherWidth;
+    /**
+     * Called by the {@link WindowViewCoordinator} this view belongs to.
+     */
+    void setCoordinatedTranslation(float x, float y) {
+        if (x == translation[0] && y == translation[1]) return;
+        translation[0] = x;
+        translation[1] = y;
+        invalidate();
     }
 
     @Override
@@ -399,29 +510,236 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
     }
 
     /*
-     * SENSOR DATA
+     * ASYNCHRONOUS IMAGE LOADING
+     * Images are decoded on a background thread, scaled to the measured size of the view, and
+     * swapped in with a single setImageDrawable() call once ready. The current image remains
+     * displayed until then. Loading waits for the view to be laid out and attached, and is
+     * cancelled if the view is detached or given another image.
      * ---------------------------------------------------------------------------------------------
      */
-    public TiltSensorMode getTiltSensorMode() {
-        return tiltSensorMode;
+
+    /**
+     * Interface definition for callbacks to be invoked when an asynchronously loaded image has
+     * been set, or has failed to load. Not invoked for cancelled loads.
+     */
+    public interface OnImageLoadListener {
+        /**
+         * @param queuedMs  time (in milliseconds) between the load being started and picked up by
+         *                  a background thread.
+         * @param decodedMs time (in milliseconds) spent decoding, or reading from the image cache.
+         * @param totalMs   time (in milliseconds) between the load being started and the image
+         *                  being set.
+         * @param fromCache true if the image was read from the {@link BitmapDiskCache} set via
+         *                  {@link #setImageCache(BitmapDiskCache)} rather than decoded.
+         */
+        void onImageLoaded(long queuedMs, long decodedMs, long totalMs, boolean fromCache);
+
+        /**
+         * @param error an {@link IOException}, or a {@link RuntimeException} or
+         *              {@link OutOfMemoryError} thrown while opening or decoding the image.
+         */
+        void onImageLoadFailed(Throwable error);
     }
 
-    private void initSensor() {
-        sensor = new TiltSensor(getContext(), orientationMode == OrientationMode.RELATIVE);
-        sensor.addListener(this);
+    /**
+     * Loads the given drawable resource (a bitmap, e.g. JPEG or PNG) asynchronously.
+     */
+    public void setImageResourceAsync(int resId) {
+        setImageSourceAsync(AsyncImageLoader.resource(getContext(), resId));
     }
 
     /**
-     * If tilt motion tracking is not in progress, start it.
+     * Loads the image at the given URI asynchronously. Supports the same schemes as
+     * {@link android.content.ContentResolver#openInputStream(Uri)}.
      */
-    public void startTiltTracking() {
-        if (null == sensor) {
-            // this will be the case if tiltSensorMode == TiltSensorMode.MANUAL
-            initSensor();
-        } else if (sensor.isTracking()) {
+    public void setImageUriAsync(Uri uri) {
+        setImageSourceAsync(AsyncImageLoader.uri(getContext().getContentResolver(), uri));
+    }
+
+    /**
+     * Loads the image file at the given path asynchronously.
+     */
+    public void setImageFileAsync(String path) {
+        setImageSourceAsync(AsyncImageLoader.file(path));
+    }
+
+    private void setImageSourceAsync(AsyncImageLoader.Source source) {
+        cancelImageLoad();
+        imagePyramid = null;
+        imagePyramidLevel = -1;
+        pendingImageSource = source;
+        startImageLoad();
+    }
+
+    /**
+     * Cancels any asynchronous image load in progress. The current image remains.
+     */
+    public void cancelImageLoad() {
+        if (null != imageLoad) {
+            imageLoad.cancel();
+            imageLoad = null;
+        }
+        if (null != imagePyramidLoad) {
+            imagePyramidLoad.cancel();
+            imagePyramidLoad = null;
+            // re-selected once the view is next resized or attached
+            imagePyramidLevel = -1;
+        }
+    }
+
+    /**
+     * @return true if an asynchronously set image has not been loaded yet.
+     */
+    public boolean isImageLoadPending() {
+        return null != pendingImageSource || null != imagePyramidLoad;
+    }
+
+    /**
+     * @param executor to decode images on, or null to use a small thread pool shared by all
+     *                 WindowViews.
+     */
+    public void setImageLoadExecutor(Executor executor) {
+        imageLoadExecutor = executor;
+    }
+
+    /**
+     * @param cache used to store and retrieve asynchronously loaded images, already sized to this
+     *              view, to skip decoding on subsequent loads. May be shared between views.
+     *              Null to disable.
+     */
+    public void setImageCache(BitmapDiskCache cache) {
+        imageCache = cache;
+    }
+
+    public void setOnImageLoadListener(OnImageLoadListener listener) {
+        imageLoadListener = listener;
+    }
+
+    private void startImageLoad() {
+        if (null == pendingImageSource || null != imageLoad || isInEditMode()) return;
+        if (null == getWindowToken() || 0 == getWidth() || 0 == getHeight()) return;
+
+        imageLoad = AsyncImageLoader.load(pendingImageSource, getWidth(), getHeight(), imageCache,
+                null != imageLoadExecutor ? imageLoadExecutor : AsyncImageLoader.DEFAULT_EXECUTOR,
+                imageLoadCallback);
+    }
+
+    private final AsyncImageLoader.Callback imageLoadCallback = new AsyncImageLoader.Callback() {
+        @Override
+        public void onLoaded(AsyncImageLoader.Request request, Bitmap bitmap) {
+            if (request != imageLoad) {
+                bitmap.recycle();
+                return;
+            }
+            imageLoad = null;
+            pendingImageSource = null;
+
+            settingLoadedImage = true;
+            try {
+                setImageDrawable(new BitmapDrawable(getResources(), bitmap));
+            } finally {
+                settingLoadedImage = false;
+            }
+
+            if (null != imageLoadListener) {
+                final long now = SystemClock.uptimeMillis();
+                imageLoadListener.onImageLoaded(request.startTime - request.requestTime,
+                        request.endTime - request.startTime, now - request.requestTime,
+                        request.fromCache);
+            }
+        }
+
+        @Override
+        public void onFailed(AsyncImageLoader.Request request, Throwable error) {
+            if (request != imageLoad) return;
+            imageLoad = null;
+            pendingImageSource = null;
+            if (null != imageLoadListener) {
+                imageLoadListener.onImageLoadFailed(error);
+            }
+        }
+    };
+
+    /*
+     * INSTANCE STATE
+     * Retains the latest tilt and, if WindowView has its own tilt sensor, its orientation origin
+     * and filter state, so the image does not jump upon re-creation.
+     * ---------------------------------------------------------------------------------------------
+     */
+    @Override
+    protected Parcelable onSaveInstanceState() {
+        SavedState state = new SavedState(super.onSaveInstanceState());
+        state.latestPitch = latestPitch;
+        state.latestRoll = latestRoll;
+        state.sensorState = tracker.saveState();
+        return state;
+    }
+
+    @Override
+    protected void onRestoreInstanceState(Parcelable state) {
+        if (!(state instanceof SavedState)) {
+            super.onRestoreInstanceState(state);
             return;
         }
-        sensor.startTracking(sensorSamplingPeriod);
+        SavedState savedState = (SavedState) state;
+        super.onRestoreInstanceState(savedState.getSuperState());
+        latestPitch = savedState.latestPitch;
+        latestRoll = savedState.latestRoll;
+        tracker.restoreState(savedState.sensorState);
+        invalidate();
+    }
+
+    static class SavedState extends BaseSavedState {
+        float latestPitch;
+        float latestRoll;
+        float[] sensorState;
+
+        SavedState(Parcelable superState) {
+            super(superState);
+        }
+
+        private SavedState(Parcel in) {
+            super(in);
+            latestPitch = in.readFloat();
+            latestRoll = in.readFloat();
+            sensorState = in.createFloatArray();
+        }
+
+        @Override
+        public void writeToParcel(Parcel out, int flags) {
+            super.writeToParcel(out, flags);
+            out.writeFloat(latestPitch);
+            out.writeFloat(latestRoll);
+            out.writeFloatArray(sensorState);
+        }
+
+        public static final Parcelable.Creator<SavedState> CREATOR =
+                new Parcelable.Creator<SavedState>() {
+                    @Override
+                    public SavedState createFromParcel(Parcel in) {
+                        return new SavedState(in);
+                    }
+
+                    @Override
+                    public SavedState[] newArray(int size) {
+                        return new SavedState[size];
+                    }
+                };
+    }
+
+    /*
+     * SENSOR DATA
+     * ---------------------------------------------------------------------------------------------
+     */
+    public TiltSensorMode getTiltSensorMode() {
+        return tracker.tiltSensorMode;
+    }
+
+    /**
+     * If tilt motion tracking is not in progress, start it.
+     */
+    public void startTiltTracking() {
+        tracker.startTiltTracking();
     }
 
     /**
@@ -431,11 +749,7 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
      *                               and {@link #startTiltTracking()} was not called prior.
      */
     public void stopTiltTracking() {
-        if (null == sensor) {
-            throw new IllegalStateException(
-                    "WindowView does not have its own tilt sensor, cannot stop tracking.");
-        }
-        sensor.stopTracking();
+        tracker.stopTiltTracking();
     }
 
     /**
@@ -448,20 +762,11 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
      *                               {@link TiltSensorMode#MANUAL}.
      */
     public void attachTiltTracking(TiltSensor externalSensor) {
-        if (TiltSensorMode.MANUAL != tiltSensorMode) {
-            // WindowView has its own tilt sensor, cannot attach external one.
-            throw new IllegalStateException(
-                    "External tilt sensor can only be attached if tilt sensor mode is set to MANUAL.");
-        }
-        if (null != sensor) {
-            // will be the case if #startTiltTracking() was called previously
-            if (sensor.isTracking()) sensor.stopTracking();
-        }
-        externalSensor.addListener(this);
+        tracker.attachTiltTracking(externalSensor);
     }
 
     public void detachTiltTracking(TiltSensor externalSensor) {
-        externalSensor.removeListener(this);
+        tracker.detachTiltTracking(externalSensor);
     }
 
     @Override
@@ -472,19 +777,11 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
     }
 
     public void addTiltListener(TiltSensor.TiltListener listener) {
-        if (null == sensor) {
-            throw new IllegalStateException(
-                    "WindowView does not have its own tilt sensor, cannot add listener.");
-        }
-        sensor.addListener(listener);
+        tracker.addTiltListener(listener);
     }
 
     public void removeTiltListener(TiltSensor.TiltListener listener) {
-        if (null == sensor) {
-            throw new IllegalStateException(
-                    "WindowView does not have its own tilt sensor, cannot remove listener.");
-        }
-        sensor.removeListener(listener);
+        tracker.removeTiltListener(listener);
     }
 
     /**
@@ -494,11 +791,27 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
      * @param immediate if false, the sensor values smoothly interpolate to the new origin.
      */
     public void resetOrientationOrigin(boolean immediate) {
-        if (null == sensor) {
-            throw new IllegalStateException(
-                    "WindowView does not have its own tilt sensor, cannot reset orientation origin.");
-        }
-        sensor.resetOrigin(immediate);
+        tracker.resetOrientationOrigin(immediate);
+    }
+
+    /**
+     * Configures the transition upon {@link #resetOrientationOrigin(boolean)} with immediate set
+     * to false. Only applies to WindowView's own tilt sensor.
+     *
+     * @param durationMs   duration of the transition, driven by the display frame clock. If 0,
+     *                     the sensor's smoothing filters are relied on instead.
+     * @param interpolator easing curve of the transition, or null for linear.
+     * @see TiltSensor#setOriginResetAnimation(long, Interpolator)
+     */
+    public void setOriginResetAnimation(long durationMs, Interpolator interpolator) {
+        tracker.setOriginResetAnimation(durationMs, interpolator);
+    }
+
+    /**
+     * @return duration (in milliseconds) of the transition upon resetting the orientation origin.
+     */
+    public long getOriginResetDuration() {
+        return tracker.originResetDurationMs;
     }
 
     /**
@@ -506,32 +819,50 @@ public class WindowView extends ImageView implements TiltSensor.TiltListener {
      * See {@link OrientationMode}.
      */
     public void setOrientationMode(OrientationMode orientationMode) {
-        this.orientationMode = orientationMode;
-        if (null != sensor) {
-            sensor.setTrackRelativeOrientation(orientationMode == OrientationMode.RELATIVE);
-            sensor.resetOrigin(true);
-        }
+        tracker.setOrientationMode(orientationMode);
     }
 
     public OrientationMode getOrientationMode() {
-        return orientationMode;
+        return tracker.orientationMode;
     }
 
     /**
-     * @param samplingPeriodUs see {@link SensorManager#registerListener(SensorEventListener, Sensor, int)}
+     * @param samplingPeriodUs see {@link SensorManager#registerListener(SensorEventListener, Sensor, int)},
+     *                         or {@link TiltSensor#SAMPLING_PERIOD_AUTO} to match the display
+     *                         refresh rate.
      */
     public void setSensorSamplingPeriod(int samplingPeriodUs) {
-        this.sensorSamplingPeriod = samplingPeriodUs;
-        if (null != sensor && sensor.isTracking()) {
-            sensor.stopTracking();
-            sensor.startTracking(this.sensorSamplingPeriod);
-        }
+        tracker.setSensorSamplingPeriod(samplingPeriodUs);
+    }
+
+    /**
+     * Applies a named power / latency trade-off to this view's own tilt sensor, and limits the
+     * rate at which this view redraws in response to tilt accordingly. Takes effect immediately,
+     * without interrupting tracking. Overrides any sampling period set via
+     * {@link #setSensorSamplingPeriod(int)}.
+     * <p>
+     * An external sensor (see {@link #attachTiltTracking(TiltSensor)}) is configured by its owner;
+     * only the redraw limits apply, as of the next attachment.
+     *
+     * @see TiltSensor#setProfile(TiltSensor.Profile)
+     */
+    public void setTiltProfile(TiltSensor.Profile tiltProfile) {
+        tracker.setTiltProfile(tiltProfile);
+    }
+
+    /**
+     * @return profile set via {@link #setTiltProfile(TiltSensor.Profile)} or the wwv_tilt_profile
+     * attribute, null if none.
+     */
+    public TiltSensor.Profile getTiltProfile() {
+        return tracker.tiltProfile;
     }
 
     /**
-     * @return sensor sampling period (in microseconds).
+     * @return sensor sampling period (in microseconds), as set. See
+     * {@link TiltSensor#getSamplingPeriod()} for the period in effect.
      */
     public int getSensorSamplingPeriod() {
-        return sensorSamplingPeriod;
+        return tracker.sensorSamplingPeriod;
     }
 }
@@ -0,0 +1,164 @@
+package com.jmedeisis.windowview;
+
+import com.jmedeisis.windowview.sensor.FrameTicker;
+import com.jmedeisis.windowview.sensor.TiltSensor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Drives a group of {@link WindowView}s from one {@link TiltSensor}, as an alternative to
+ * attaching each via {@link WindowView#attachTiltTracking(TiltSensor)}. Tilt is received once per
+ * update rather than once per view. On the next display frame, the translations of all members
+ * are computed in a single pass, and only members whose translation changed are invalidated, all
+ * from the same frame callback.
+ * <p>
+ * Members must use {@link WindowView.TiltSensorMode#MANUAL} and must not also be attached to a
+ * tilt sensor themselves. Must be used on the main thread.
+ */
+public class WindowViewCoordinator implements TiltSensor.TiltListener, FrameTicker.Callback {
+
+    private final List<WindowView> members = new ArrayList<>();
+    /**
+     * [x, y] translation of each member, in order.
+     */
+    private float[] translations = new float[0];
+    private float latestPitch;
+    private float latestRoll;
+    private boolean lockTranslations;
+    /**
+     * True if members need updating on the next frame.
+     */
+    private boolean dirty;
+    private FrameTicker ticker;
+
+    /**
+     * @throws IllegalStateException if the view's {@link WindowView#getTiltSensorMode()} is not
+     *                               {@link WindowView.TiltSensorMode#MANUAL}, or it already
+     *                               belongs to a coordinator.
+     */
+    public void addView(WindowView view) {
+        if (WindowView.TiltSensorMode.MANUAL != view.getTiltSensorMode()) {
+            throw new IllegalStateException(
+                    "Coordinated WindowViews must use tilt sensor mode MANUAL.");
+        }
+        if (null != view.coordinator) {
+            throw new IllegalStateException("WindowView already belongs to a coordinator.");
+        }
+        view.coordinator = this;
+        members.add(view);
+        if (translations.length < members.size() * 2) {
+            translations = new float[members.size() * 2];
+        }
+        requestUpdate();
+    }
+
+    /**
+     * The view is handed this coordinator's latest tilt, so it keeps its current translation until
+     * it is next updated by a tilt sensor.
+     */
+    public void removeView(WindowView view) {
+        if (!members.remove(view)) return;
+        view.coordinator = null;
+        view.onTiltUpdate(0, latestPitch, latestRoll);
+    }
+
+    public int getViewCount() {
+        return members.size();
+    }
+
+    /**
+     * Starts receiving tilt updates from the given sensor. Starting and stopping the sensor is not
+     * the responsibility of this coordinator.
+     */
+    public void attachTiltTracking(TiltSensor sensor) {
+        sensor.addListener(this);
+    }
+
+    public void detachTiltTracking(TiltSensor sensor) {
+        sensor.removeListener(this);
+        if (null != ticker) ticker.stop();
+        dirty = false;
+    }
+
+    /**
+     * @param lock if true, members in {@link WindowView.TranslateMode#CONSTANT} move in tandem
+     *             even once some reach the edge of their image: all are limited to the smallest
+     *             translation range among them, per axis. Members should then share the same
+     *             maximum constant translation, maximum angles, origins and response curve.
+     */
+    public void setLockTranslations(boolean lock) {
+        this.lockTranslations = lock;
+        requestUpdate();
+    }
+
+    public boolean isLockTranslations() {
+        return lockTranslations;
+    }
+
+    @Override
+    public void onTiltUpdate(float yaw, float pitch, float roll) {
+        latestPitch = pitch;
+        latestRoll = roll;
+        requestUpdate();
+    }
+
+    /**
+     * Schedules an update of all members on the next frame, e.g. once a member's layout or image
+     * has changed.
+     */
+    void requestUpdate() {
+        dirty = true;
+        if (null == ticker) ticker = FrameTicker.create(this);
+        ticker.start();
+    }
+
+    @Override
+    public void onFrame(long frameTimeNanos) {
+        if (!dirty) {
+            // idle until the next tilt update
+            ticker.stop();
+            return;
+        }
+        update();
+    }
+
+    /**
+     * Applies the latest tilt to all members immediately, rather than on the next frame.
+     */
+    public void update() {
+        dirty = false;
+        final int count = members.size();
+
+        float limitX = Float.MAX_VALUE;
+        float limitY = Float.MAX_VALUE;
+        if (lockTranslations) {
+            for (int i = 0; i < count; i++) {
+                final WindowView member = members.get(i);
+                final TiltTranslator translator = member.translator;
+                if (WindowView.TranslateMode.CONSTANT != translator.translateMode
+                        || null == member.getDrawable()) continue;
+                if (translator.heightMatches) {
+                    limitX = Math.min(limitX, translator.widthDifference / 2);
+                } else {
+                    limitY = Math.min(limitY, translator.heightDifference / 2);
+                }
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            final TiltTranslator translator = members.get(i).translator;
+            translator.computeTranslation(latestPitch, latestRoll, translations, i * 2);
+            if (lockTranslations && WindowView.TranslateMode.CONSTANT == translator.translateMode) {
+                translations[i * 2] = TiltTranslator.clampAbsoluteFloating(0,
+                        translations[i * 2], limitX);
+                translations[i * 2 + 1] = TiltTranslator.clampAbsoluteFloating(0,
+                        translations[i * 2 + 1], limitY);
+            }
+        }
+
+        for (int i = 0; i < count; i++) {
+            members.get(i).setCoordinatedTranslation(translations[i * 2], translations[i * 2 + 1]);
+        }
+    }
+}
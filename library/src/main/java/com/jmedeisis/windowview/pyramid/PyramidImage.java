@@ -0,0 +1,213 @@
+package com.jmedeisis.windowview.pyramid;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A memory-mapped, multi-resolution image, preprocessed so that it can be displayed without
+ * decoding. Levels and tiles are read directly from mapped memory.
+ * <p>
+ * File format, all values little-endian:
+ * <pre>
+ * header:
+ *   int32   magic, "WWVP"
+ *   int32   version, 1
+ *   int32   pixel format, 1 = RGB_565
+ *   int32   tile size (in pixels)
+ *   int32   level count
+ *   levels, from full resolution down, each halving the previous one's dimensions:
+ *     int32 width
+ *     int32 height
+ *     int32 tiles across
+ *     int32 tiles down
+ *     int64 offset of the level's first tile
+ * tiles:
+ *   for each level, row-major tiles of tile size x tile size pixels, row-major pixels.
+ *   Tiles at the right and bottom edges are padded to full size.
+ * </pre>
+ * Files are created with the pyramid-converter tool.
+ */
+public class PyramidImage {
+
+    static final int MAGIC = 0x50565757; // "WWVP" little-endian
+    static final int VERSION = 1;
+    static final int PIXEL_FORMAT_RGB_565 = 1;
+    private static final int BYTES_PER_PIXEL = 2;
+    private static final int HEADER_SIZE = 20;
+    private static final int LEVEL_HEADER_SIZE = 24;
+
+    private final ByteBuffer buffer;
+    private final int tileSize;
+    private final int tileBytes;
+    private final int[] levelWidths;
+    private final int[] levelHeights;
+    private final int[] levelTilesAcross;
+    private final int[] levelTilesDown;
+    private final long[] levelOffsets;
+
+    /**
+     * Reused to copy tiles out of mapped memory, see {@link #decodeLevel(int)}.
+     */
+    private Bitmap tileBitmap;
+
+    private PyramidImage(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.capacity() < HEADER_SIZE || MAGIC != buffer.getInt(0)) {
+            throw new IOException("Not a WindowView image pyramid.");
+        }
+        if (VERSION != buffer.getInt(4)) {
+            throw new IOException("Unsupported image pyramid version " + buffer.getInt(4) + ".");
+        }
+        if (PIXEL_FORMAT_RGB_565 != buffer.getInt(8)) {
+            throw new IOException("Unsupported image pyramid pixel format " + buffer.getInt(8) + ".");
+        }
+        tileSize = buffer.getInt(12);
+        tileBytes = tileSize * tileSize * BYTES_PER_PIXEL;
+        final int levelCount = buffer.getInt(16);
+        if (tileSize <= 0 || levelCount <= 0
+                || buffer.capacity() < HEADER_SIZE + levelCount * LEVEL_HEADER_SIZE) {
+            throw new IOException("Corrupt image pyramid header.");
+        }
+
+        levelWidths = new int[levelCount];
+        levelHeights = new int[levelCount];
+        levelTilesAcross = new int[levelCount];
+        levelTilesDown = new int[levelCount];
+        levelOffsets = new long[levelCount];
+        for (int level = 0; level < levelCount; level++) {
+            final int position = HEADER_SIZE + level * LEVEL_HEADER_SIZE;
+            levelWidths[level] = buffer.getInt(position);
+            levelHeights[level] = buffer.getInt(position + 4);
+            levelTilesAcross[level] = buffer.getInt(position + 8);
+            levelTilesDown[level] = buffer.getInt(position + 12);
+            levelOffsets[level] = buffer.getLong(position + 16);
+            final long end = levelOffsets[level] +
+                    (long) levelTilesAcross[level] * levelTilesDown[level] * tileBytes;
+            if (end > buffer.capacity()) {
+                throw new IOException("Truncated image pyramid.");
+            }
+        }
+    }
+
+    /**
+     * Memory-maps the given image pyramid file. Only the header is read immediately.
+     *
+     * @throws IOException if the file cannot be read or is not a valid image pyramid.
+     */
+    public static PyramidImage open(File file) throws IOException {
+        final RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            // mapping remains valid once the channel is closed
+            final MappedByteBuffer buffer =
+                    channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            return new PyramidImage(buffer);
+        } finally {
+            randomAccessFile.close();
+        }
+    }
+
+    public int getWidth() {
+        return levelWidths[0];
+    }
+
+    public int getHeight() {
+        return levelHeights[0];
+    }
+
+    public int getLevelCount() {
+        return levelWidths.length;
+    }
+
+    public int getLevelWidth(int level) {
+        return levelWidths[level];
+    }
+
+    public int getLevelHeight(int level) {
+        return levelHeights[level];
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    /**
+     * @return the smallest level that still covers a view of the given size when scaled with
+     * CENTER_CROP, i.e. that does not need to be scaled up.
+     */
+    public int selectLevel(int viewWidth, int viewHeight) {
+        final float cropScale = Math.max((float) viewWidth / getWidth(),
+                (float) viewHeight / getHeight());
+        final float requiredWidth = getWidth() * cropScale;
+        final float requiredHeight = getHeight() * cropScale;
+        int level = 0;
+        while (level + 1 < getLevelCount()
+                && levelWidths[level + 1] >= requiredWidth
+                && levelHeights[level + 1] >= requiredHeight) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * Copies a single tile out of mapped memory.
+     *
+     * @param reuse a mutable RGB_565 Bitmap of tile size x tile size to copy into, or null to
+     *              allocate a new one.
+     * @return tile, padded to tile size at the right and bottom image edges.
+     */
+    public Bitmap decodeTile(int level, int tileX, int tileY, Bitmap reuse) {
+        if (tileX < 0 || tileX >= levelTilesAcross[level]
+                || tileY < 0 || tileY >= levelTilesDown[level]) {
+            throw new IllegalArgumentException("Tile " + tileX + ", " + tileY +
+                    " out of bounds for level " + level + ".");
+        }
+        final Bitmap tile = null != reuse ? reuse :
+                Bitmap.createBitmap(tileSize, tileSize, Bitmap.Config.RGB_565);
+        final int offset = (int) (levelOffsets[level] +
+                (long) (tileY * levelTilesAcross[level] + tileX) * tileBytes);
+        final ByteBuffer source = buffer.duplicate();
+        source.position(offset);
+        source.limit(offset + tileBytes);
+        tile.copyPixelsFromBuffer(source);
+        return tile;
+    }
+
+    /**
+     * Assembles a whole level from its tiles. Allocates and fills a Bitmap of the whole level, so
+     * best called off the main thread.
+     *
+     * @return RGB_565 Bitmap of {@link #getLevelWidth(int)} x {@link #getLevelHeight(int)}.
+     */
+    public Bitmap decodeLevel(int level) {
+        final Bitmap bitmap = Bitmap.createBitmap(levelWidths[level], levelHeights[level],
+                Bitmap.Config.RGB_565);
+        boolean complete = false;
+        try {
+            final Canvas canvas = new Canvas(bitmap);
+            synchronized (this) {
+                if (null == tileBitmap) {
+                    tileBitmap = Bitmap.createBitmap(tileSize, tileSize, Bitmap.Config.RGB_565);
+                }
+                for (int tileY = 0; tileY < levelTilesDown[level]; tileY++) {
+                    for (int tileX = 0; tileX < levelTilesAcross[level]; tileX++) {
+                        decodeTile(level, tileX, tileY, tileBitmap);
+                        canvas.drawBitmap(tileBitmap, tileX * tileSize, tileY * tileSize, null);
+                    }
+                }
+            }
+            complete = true;
+        } finally {
+            if (!complete) bitmap.recycle();
+        }
+        return bitmap;
+    }
+}
@@ -0,0 +1,121 @@
+package com.jmedeisis.windowview.sensor;
+
+import android.hardware.Sensor;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * {@link TiltSource} that reads samples straight out of the shared memory of a sensor direct
+ * channel once per display frame, rather than receiving a {@link android.hardware.SensorEvent}
+ * callback per sample.
+ * <p>
+ * The caller creates the direct channel (API 26+), maps its shared memory, and configures the
+ * rotation vector sensor (or accelerometer and magnetometer) to report into it at the desired
+ * rate; the sampling period passed to {@link #start(SampleListener, int)} is therefore ignored.
+ * Samples from all sensors reporting into the buffer are delivered, in order, on the main thread.
+ * Sensors disabled via {@link #disableSensor(int)} are filtered out but keep reporting until the
+ * caller reconfigures the channel.
+ */
+public class DirectChannelTiltSource implements TiltSource, FrameTicker.Callback,
+        DirectReportParser.ReportHandler {
+
+    private final ByteBuffer buffer;
+    private final DirectReportParser parser = new DirectReportParser();
+    private FrameTicker ticker;
+    private SampleListener listener;
+    private boolean rotationVectorEnabled;
+    private boolean magneticFieldEnabled;
+    private boolean gravityEnabled;
+    private boolean accelerometerEnabled;
+
+    /**
+     * @param sharedMemory mapped shared memory of the direct channel. Not modified.
+     */
+    public DirectChannelTiltSource(ByteBuffer sharedMemory) {
+        // the sensor HAL writes in native byte order
+        this.buffer = sharedMemory.duplicate().order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Must be called on the main thread.
+     */
+    @Override
+    public void start(SampleListener listener, int samplingPeriodUs) {
+        this.listener = listener;
+        rotationVectorEnabled = true;
+        magneticFieldEnabled = true;
+        gravityEnabled = true;
+        accelerometerEnabled = true;
+        // samples from before starting are stale
+        parser.skipToLatest(buffer);
+        if (null == ticker) ticker = FrameTicker.create(this);
+        ticker.start();
+    }
+
+    @Override
+    public void stop() {
+        if (null != ticker) ticker.stop();
+        listener = null;
+    }
+
+    @Override
+    public void disableSensor(int sensorType) {
+        setEnabled(sensorType, false);
+    }
+
+    @Override
+    public void enableSensor(int sensorType) {
+        if (null == listener) return;
+        setEnabled(sensorType, true);
+    }
+
+    /**
+     * @return parser statistics, e.g. samples overwritten before they could be read.
+     */
+    public DirectReportParser getParser() {
+        return parser;
+    }
+
+    @Override
+    public void onFrame(long frameTimeNanos) {
+        parser.read(buffer, this);
+    }
+
+    @Override
+    public void onReport(int sensorType, int token, float[] values, long timestampNs) {
+        if (null == listener || !isSensorEnabled(sensorType)) return;
+        listener.onSample(sensorType, values, timestampNs);
+    }
+
+    private boolean isSensorEnabled(int sensorType) {
+        switch (sensorType) {
+            case Sensor.TYPE_ROTATION_VECTOR:
+                return rotationVectorEnabled;
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                return magneticFieldEnabled;
+            case Sensor.TYPE_GRAVITY:
+                return gravityEnabled;
+            case Sensor.TYPE_ACCELEROMETER:
+                return accelerometerEnabled;
+        }
+        return false;
+    }
+
+    private void setEnabled(int sensorType, boolean enabled) {
+        switch (sensorType) {
+            case Sensor.TYPE_ROTATION_VECTOR:
+                rotationVectorEnabled = enabled;
+                break;
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                magneticFieldEnabled = enabled;
+                break;
+            case Sensor.TYPE_GRAVITY:
+                gravityEnabled = enabled;
+                break;
+            case Sensor.TYPE_ACCELEROMETER:
+                accelerometerEnabled = enabled;
+                break;
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package com.jmedeisis.windowview.sensor;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Reads sensor events out of a sensor direct channel's shared memory buffer, as written by the
+ * sensor HAL. Only depends on java.nio, so it may be used (and exercised with synthetic buffers)
+ * outside of Android.
+ * <p>
+ * The buffer is a ring of fixed-size direct report records, in native byte order:
+ * <pre>
+ * offset  type        field
+ *  0      int32       record size, 104
+ *  4      int32       sensor report token
+ *  8      int32       sensor type
+ * 12      uint32      atomic counter, starting at 1; 0 if the record was never written
+ * 16      int64       timestamp (in nanoseconds)
+ * 24      float[16]   data, as per SensorEvent#values
+ * 88      int32[4]    reserved
+ * </pre>
+ * Record n (counting from 1) is written at index (n - 1) modulo the number of records in the
+ * buffer. New records are read in counter order without copying the buffer; values are decoded
+ * into a single reused array.
+ */
+public class DirectReportParser {
+
+    /**
+     * Interface for callback to be invoked for each new record.
+     */
+    public interface ReportHandler {
+        /**
+         * @param values reused between calls; only valid for the duration of the call.
+         */
+        void onReport(int sensorType, int token, float[] values, long timestampNs);
+    }
+
+    public static final int RECORD_SIZE = 104;
+    static final int OFFSET_SIZE = 0;
+    static final int OFFSET_TOKEN = 4;
+    static final int OFFSET_TYPE = 8;
+    static final int OFFSET_COUNTER = 12;
+    static final int OFFSET_TIMESTAMP = 16;
+    static final int OFFSET_DATA = 24;
+    public static final int VALUE_COUNT = 16;
+
+    private static final long COUNTER_MASK = 0xffffffffL;
+
+    private final float[] values = new float[VALUE_COUNT];
+    /**
+     * Counter of the last record read, 0 if none.
+     */
+    private long lastCounter;
+    private int droppedCount;
+    private int tornCount;
+
+    /**
+     * Reads all records written since the previous call, oldest first.
+     *
+     * @param buffer shared memory buffer in native byte order; its position and limit are not
+     *               used or modified.
+     * @return number of records passed to the handler.
+     */
+    public int read(ByteBuffer buffer, ReportHandler handler) {
+        final int recordCount = buffer.capacity() / RECORD_SIZE;
+        if (0 == recordCount) return 0;
+
+        int read = 0;
+        // a full ring plus one resynchronisation; bounded in case the writer keeps lapping us
+        for (int i = 0; i <= recordCount; i++) {
+            final long expected = (lastCounter + 1) & COUNTER_MASK;
+            final int offset = indexOf(expected, recordCount) * RECORD_SIZE;
+            final long counter = readCounter(buffer, offset);
+            if (counter == expected) {
+                if (readRecord(buffer, offset, counter, handler)) read++;
+                lastCounter = counter;
+            } else if (isAfter(counter, expected)) {
+                // overwritten before it could be read; resume from the oldest record still there
+                final long oldest = findOldestAfter(buffer, recordCount, lastCounter);
+                if (0 == oldest) break;
+                droppedCount += (int) ((oldest - expected) & COUNTER_MASK);
+                lastCounter = (oldest - 1) & COUNTER_MASK;
+            } else {
+                // not written yet
+                break;
+            }
+        }
+        return read;
+    }
+
+    /**
+     * Skips all records currently in the buffer, so that the next {@link #read} only returns
+     * records written after this call.
+     */
+    public void skipToLatest(ByteBuffer buffer) {
+        final int recordCount = buffer.capacity() / RECORD_SIZE;
+        long latest = lastCounter;
+        for (int i = 0; i < recordCount; i++) {
+            final long counter = readCounter(buffer, i * RECORD_SIZE);
+            if (0 != counter && isAfter(counter, latest)) latest = counter;
+        }
+        lastCounter = latest;
+    }
+
+    /**
+     * Forgets the position of the last record read, e.g. when the buffer is reused for a new
+     * channel.
+     */
+    public void reset() {
+        lastCounter = 0;
+    }
+
+    /**
+     * @return number of records overwritten by the writer before they could be read.
+     */
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return number of records discarded because they were being overwritten while read.
+     */
+    public int getTornCount() {
+        return tornCount;
+    }
+
+    public void resetStatistics() {
+        droppedCount = 0;
+        tornCount = 0;
+    }
+
+    /**
+     * @return true if the record was consistent and passed to the handler.
+     */
+    private boolean readRecord(ByteBuffer buffer, int offset, long counter, ReportHandler handler) {
+        if (RECORD_SIZE != buffer.getInt(offset + OFFSET_SIZE)) return false;
+        final int token = buffer.getInt(offset + OFFSET_TOKEN);
+        final int type = buffer.getInt(offset + OFFSET_TYPE);
+        final long timestampNs = buffer.getLong(offset + OFFSET_TIMESTAMP);
+        for (int i = 0; i < VALUE_COUNT; i++) {
+            values[i] = buffer.getFloat(offset + OFFSET_DATA + i * 4);
+        }
+        onRecordDecoded(buffer, offset);
+        if (readCounter(buffer, offset) != counter) {
+            // the writer lapped us mid-read
+            tornCount++;
+            return false;
+        }
+        handler.onReport(type, token, values, timestampNs);
+        return true;
+    }
+
+    /**
+     * Called after a record has been decoded, before its counter is checked again. Does nothing;
+     * overridden in tests to overwrite the record at that point, as a writer lapping the reader
+     * would.
+     */
+    void onRecordDecoded(ByteBuffer buffer, int offset) {
+    }
+
+    private static long findOldestAfter(ByteBuffer buffer, int recordCount, long after) {
+        long oldest = 0;
+        for (int i = 0; i < recordCount; i++) {
+            final long counter = readCounter(buffer, i * RECORD_SIZE);
+            if (0 != counter && isAfter(counter, after)
+                    && (0 == oldest || isAfter(oldest, counter))) {
+                oldest = counter;
+            }
+        }
+        return oldest;
+    }
+
+    private static long readCounter(ByteBuffer buffer, int offset) {
+        return buffer.getInt(offset + OFFSET_COUNTER) & COUNTER_MASK;
+    }
+
+    private static int indexOf(long counter, int recordCount) {
+        return (int) (((counter - 1) & COUNTER_MASK) % recordCount);
+    }
+
+    /**
+     * @return true if counter a was written after counter b, allowing for 32-bit wrap around.
+     */
+    private static boolean isAfter(long a, long b) {
+        return (int) (a - b) > 0;
+    }
+}
@@ -0,0 +1,63 @@
+package com.jmedeisis.windowview.sensor;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.hardware.display.DisplayManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Display;
+
+/**
+ * Notifies of changes to a display's properties, such as its rotation, while started.
+ * Only instantiate on API 17+.
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+class DisplayChangeMonitor implements DisplayManager.DisplayListener {
+
+    interface Callback {
+        void onDisplayChanged(Display display);
+    }
+
+    private final DisplayManager displayManager;
+    private final int displayId;
+    private final Callback callback;
+    private final Handler handler;
+    private boolean started;
+
+    DisplayChangeMonitor(Context context, Display display, Callback callback) {
+        this.displayManager = (DisplayManager) context.getSystemService(Context.DISPLAY_SERVICE);
+        this.displayId = display.getDisplayId();
+        this.callback = callback;
+        this.handler = new Handler(Looper.getMainLooper());
+    }
+
+    void start() {
+        if (started) return;
+        displayManager.registerDisplayListener(this, handler);
+        started = true;
+    }
+
+    void stop() {
+        if (!started) return;
+        displayManager.unregisterDisplayListener(this);
+        started = false;
+    }
+
+    @Override
+    public void onDisplayAdded(int displayId) {
+
+    }
+
+    @Override
+    public void onDisplayRemoved(int displayId) {
+
+    }
+
+    @Override
+    public void onDisplayChanged(int displayId) {
+        if (this.displayId != displayId) return;
+        Display display = displayManager.getDisplay(displayId);
+        if (null != display) callback.onDisplayChanged(display);
+    }
+}
@@ -3,17 +3,36 @@ package com.jmedeisis.windowview.sensor;
 /**
  * Performs exponential smoothing with an exponentially-weighted moving average.
  * Analogous to an infinite-impulse-response, single-pole low-pass filter.
+ * <p>
+ * If a time constant is set via {@link #setTimeConstant(float)}, the smoothing factor is derived
+ * from the interval between timestamps passed to {@link #push(float, long)}, making the response
+ * independent of the sampling rate.
  */
 public class ExponentialSmoothingFilter implements Filter {
 
+    private static final float SECONDS_PER_NANOSECOND = 1e-9f;
+
     private float lastValue;
     /**
      * 0-1. See {@link #setSmoothingFactor(float)}.
      */
     private float factor;
+    /**
+     * In seconds. See {@link #setTimeConstant(float)}.
+     */
+    private float timeConstant;
+    /**
+     * Timestamp of the last value pushed via {@link #push(float, long)}, 0 if none.
+     */
+    private long lastTimestampNs;
+    /**
+     * See {@link #setWrapAround(float)}. 0 if values do not wrap.
+     */
+    private float period;
 
     public ExponentialSmoothingFilter(float smoothingFactor, float initialValue) {
         this.factor = smoothingFactor;
+        this.timeConstant = 0;
         reset(initialValue);
     }
 
@@ -28,9 +47,34 @@ public class ExponentialSmoothingFilter implements Filter {
         this.factor = factor;
     }
 
+    /**
+     * @param seconds the system's time constant t. If greater than 0, the smoothing factor is
+     *                recalculated as dt / (t + dt) on every {@link #push(float, long)}, where dt
+     *                is the interval since the previous timestamp. The larger the time constant,
+     *                the greater the inertia. Set to 0 to use the fixed smoothing factor instead.
+     */
+    public void setTimeConstant(float seconds) {
+        this.timeConstant = seconds;
+    }
+
+    public float getTimeConstant() {
+        return timeConstant;
+    }
+
+    /**
+     * @param period if greater than 0, values are treated as angles that wrap around within
+     *               [-period / 2, period / 2), e.g. 360 for degrees. The filter then follows the
+     *               shortest path between values, rather than sweeping across the whole range
+     *               when the input wraps.
+     */
+    public void setWrapAround(float period) {
+        this.period = period;
+    }
+
     @Override
     public void reset(float value) {
         lastValue = value;
+        lastTimestampNs = 0;
     }
 
     /**
@@ -41,10 +85,42 @@ public class ExponentialSmoothingFilter implements Filter {
     @Override
     public float push(float value) {
         // do low-pass
-        lastValue = lastValue + factor * (value - lastValue);
+        if (period > 0) {
+            lastValue = wrap(lastValue + factor * wrap(value - lastValue));
+        } else {
+            lastValue = lastValue + factor * (value - lastValue);
+        }
         return get();
     }
 
+    /**
+     * Pushes new sample to filter. Until two timestamps are known, the last smoothing factor is
+     * used. Filters that depend on the sampling period should derive it from consecutive
+     * timestamps like this, rather than assume a fixed rate.
+     *
+     * @param timestampNs sample time in nanoseconds, e.g. {@link android.hardware.SensorEvent#timestamp}.
+     * @return new smoothed value.
+     */
+    public float push(float value, long timestampNs) {
+        if (timeConstant > 0 && 0 != lastTimestampNs && timestampNs > lastTimestampNs) {
+            final float dt = (timestampNs - lastTimestampNs) * SECONDS_PER_NANOSECOND;
+            factor = dt / (timeConstant + dt);
+        }
+        lastTimestampNs = timestampNs;
+        return push(value);
+    }
+
+    /**
+     * @return value wrapped into [-period / 2, period / 2).
+     */
+    private float wrap(float value) {
+        final float halfPeriod = period / 2;
+        if (value >= -halfPeriod && value < halfPeriod) return value;
+        value = (value + halfPeriod) % period;
+        if (value < 0) value += period;
+        return value - halfPeriod;
+    }
+
     /**
      * @return smoothed value.
      */
@@ -52,4 +128,4 @@ public class ExponentialSmoothingFilter implements Filter {
     public float get() {
         return lastValue;
     }
-}
\ No newline at end of file
+}
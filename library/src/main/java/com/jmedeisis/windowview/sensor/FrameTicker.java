@@ -0,0 +1,118 @@
+package com.jmedeisis.windowview.sensor;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Invokes a callback once per display frame while running. Uses {@link Choreographer} on API 16+
+ * and falls back to posting at an approximate frame interval on older devices.
+ * <p>
+ * Must be created, started and stopped on the main thread.
+ */
+public abstract class FrameTicker {
+
+    /**
+     * Interface for callback to be invoked on every frame.
+     */
+    public interface Callback {
+        /**
+         * @param frameTimeNanos frame time in the {@link System#nanoTime()} time base.
+         */
+        void onFrame(long frameTimeNanos);
+    }
+
+    protected final Callback callback;
+    private boolean running;
+
+    protected FrameTicker(Callback callback) {
+        this.callback = callback;
+    }
+
+    public static FrameTicker create(Callback callback) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return new ChoreographerFrameTicker(callback);
+        }
+        return new HandlerFrameTicker(callback);
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        scheduleFrame();
+    }
+
+    public void stop() {
+        if (!running) return;
+        running = false;
+        cancelFrame();
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    protected void dispatchFrame(long frameTimeNanos) {
+        if (!running) return;
+        // schedule first, so that the callback may stop the ticker
+        scheduleFrame();
+        callback.onFrame(frameTimeNanos);
+    }
+
+    protected abstract void scheduleFrame();
+
+    protected abstract void cancelFrame();
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static class ChoreographerFrameTicker extends FrameTicker
+            implements Choreographer.FrameCallback {
+        private final Choreographer choreographer;
+
+        ChoreographerFrameTicker(Callback callback) {
+            super(callback);
+            choreographer = Choreographer.getInstance();
+        }
+
+        @Override
+        protected void scheduleFrame() {
+            choreographer.postFrameCallback(this);
+        }
+
+        @Override
+        protected void cancelFrame() {
+            choreographer.removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            dispatchFrame(frameTimeNanos);
+        }
+    }
+
+    private static class HandlerFrameTicker extends FrameTicker implements Runnable {
+        private static final long FRAME_INTERVAL_MS = 16;
+        private final Handler handler;
+
+        HandlerFrameTicker(Callback callback) {
+            super(callback);
+            handler = new Handler(Looper.getMainLooper());
+        }
+
+        @Override
+        protected void scheduleFrame() {
+            handler.postDelayed(this, FRAME_INTERVAL_MS);
+        }
+
+        @Override
+        protected void cancelFrame() {
+            handler.removeCallbacks(this);
+        }
+
+        @Override
+        public void run() {
+            dispatchFrame(System.nanoTime());
+        }
+    }
+}
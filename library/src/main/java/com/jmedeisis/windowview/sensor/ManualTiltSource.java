@@ -0,0 +1,100 @@
+package com.jmedeisis.windowview.sensor;
+
+import android.hardware.Sensor;
+
+/**
+ * {@link TiltSource} whose samples are pushed explicitly, e.g. from a recorded trace, a synthetic
+ * motion generator, a remote feed or a test. Samples pushed while not started, or of a type that
+ * has been disabled, are dropped.
+ * <p>
+ * Samples are delivered synchronously on the thread that calls {@link #push(int, float[], long)}.
+ */
+public class ManualTiltSource implements TiltSource {
+
+    private SampleListener listener;
+    private boolean rotationVectorEnabled;
+    private boolean magneticFieldEnabled;
+    private boolean gravityEnabled;
+    private boolean accelerometerEnabled;
+
+    @Override
+    public void start(SampleListener listener, int samplingPeriodUs) {
+        this.listener = listener;
+        rotationVectorEnabled = true;
+        magneticFieldEnabled = true;
+        gravityEnabled = true;
+        accelerometerEnabled = true;
+    }
+
+    @Override
+    public void stop() {
+        listener = null;
+    }
+
+    @Override
+    public void disableSensor(int sensorType) {
+        setEnabled(sensorType, false);
+    }
+
+    @Override
+    public void enableSensor(int sensorType) {
+        if (null == listener) return;
+        setEnabled(sensorType, true);
+    }
+
+    public boolean isStarted() {
+        return null != listener;
+    }
+
+    /**
+     * @return true if samples of the given type are currently delivered.
+     */
+    public boolean isSensorEnabled(int sensorType) {
+        switch (sensorType) {
+            case Sensor.TYPE_ROTATION_VECTOR:
+                return rotationVectorEnabled;
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                return magneticFieldEnabled;
+            case Sensor.TYPE_GRAVITY:
+                return gravityEnabled;
+            case Sensor.TYPE_ACCELEROMETER:
+                return accelerometerEnabled;
+        }
+        return false;
+    }
+
+    /**
+     * Delivers a sample to the started {@link TiltSource.SampleListener}, if any.
+     *
+     * @see TiltSource.SampleListener#onSample(int, float[], long)
+     */
+    public void push(int sensorType, float[] values, long timestampNs) {
+        if (null == listener || !isSensorEnabled(sensorType)) return;
+        listener.onSample(sensorType, values, timestampNs);
+    }
+
+    /**
+     * @see TiltSource.SampleListener#onAccuracyChanged(int, int)
+     */
+    public void pushAccuracy(int sensorType, int accuracy) {
+        if (null == listener || !isSensorEnabled(sensorType)) return;
+        listener.onAccuracyChanged(sensorType, accuracy);
+    }
+
+    private void setEnabled(int sensorType, boolean enabled) {
+        switch (sensorType) {
+            case Sensor.TYPE_ROTATION_VECTOR:
+                rotationVectorEnabled = enabled;
+                break;
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                magneticFieldEnabled = enabled;
+                break;
+            case Sensor.TYPE_GRAVITY:
+                gravityEnabled = enabled;
+                break;
+            case Sensor.TYPE_ACCELEROMETER:
+                accelerometerEnabled = enabled;
+                break;
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package com.jmedeisis.windowview.sensor;
+
+import android.view.animation.Interpolator;
+
+/**
+ * Blends tilt values from a previous orientation origin to a new one over a fixed duration,
+ * independent of sensor rate and filter smoothing. The difference between origins is applied as
+ * an offset which decays to 0 according to an easing curve.
+ */
+class OriginResetAnimator {
+
+    private long durationNs;
+    private Interpolator interpolator;
+
+    private final float[] startOffset = new float[3];
+    private long startTimeNs;
+    private boolean running;
+
+    OriginResetAnimator(long durationNs, Interpolator interpolator) {
+        this.durationNs = durationNs;
+        this.interpolator = interpolator;
+    }
+
+    void setDuration(long durationNs) {
+        this.durationNs = durationNs;
+    }
+
+    long getDuration() {
+        return durationNs;
+    }
+
+    void setInterpolator(Interpolator interpolator) {
+        this.interpolator = interpolator;
+    }
+
+    /**
+     * @param yaw   offset of the previous origin relative to the new one, at the start.
+     * @param pitch see yaw.
+     * @param roll  see yaw.
+     */
+    void start(float yaw, float pitch, float roll, long nowNs) {
+        startOffset[0] = yaw;
+        startOffset[1] = pitch;
+        startOffset[2] = roll;
+        startTimeNs = nowNs;
+        running = durationNs > 0;
+    }
+
+    void cancel() {
+        running = false;
+    }
+
+    boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @param out [yaw, pitch, roll] offsets to add to tilt values at the given time.
+     *            All 0 once the animation has finished.
+     * @return true if the animation is still running after this call.
+     */
+    boolean getOffset(long nowNs, float[] out) {
+        if (!running) {
+            out[0] = out[1] = out[2] = 0;
+            return false;
+        }
+        float fraction = (float) (nowNs - startTimeNs) / durationNs;
+        if (fraction >= 1) {
+            running = false;
+            out[0] = out[1] = out[2] = 0;
+            return false;
+        }
+        if (fraction < 0) fraction = 0;
+        final float remaining = 1 - (null == interpolator ? fraction : interpolator.getInterpolation(fraction));
+        out[0] = startOffset[0] * remaining;
+        out[1] = startOffset[1] * remaining;
+        out[2] = startOffset[2] * remaining;
+        return true;
+    }
+}
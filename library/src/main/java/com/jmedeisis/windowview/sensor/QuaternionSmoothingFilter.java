@@ -0,0 +1,117 @@
+package com.jmedeisis.windowview.sensor;
+
+/**
+ * Exponential smoothing of rotations given as unit quaternions [w, x, y, z], the rotational
+ * counterpart of {@link ExponentialSmoothingFilter}. Each new sample moves the smoothed rotation
+ * towards it along the shorter arc by normalised linear interpolation, which stays accurate for
+ * the small steps between consecutive samples and needs no trigonometry. Unlike smoothing Euler
+ * angles, this is well-behaved at any orientation, including near +/-90 degrees of pitch.
+ * <p>
+ * If a time constant is set via {@link #setTimeConstant(float)}, the smoothing factor is derived
+ * from the interval between timestamps passed to {@link #push(float[], long)}, making the response
+ * independent of the sampling rate.
+ */
+public class QuaternionSmoothingFilter {
+
+    private static final float SECONDS_PER_NANOSECOND = 1e-9f;
+
+    /**
+     * [w, x, y, z]
+     */
+    private final float[] lastValue = new float[4];
+    /**
+     * 0-1. See {@link ExponentialSmoothingFilter#setSmoothingFactor(float)}.
+     */
+    private float factor;
+    /**
+     * In seconds. See {@link #setTimeConstant(float)}.
+     */
+    private float timeConstant;
+    /**
+     * Timestamp of the last value pushed via {@link #push(float[], long)}, 0 if none.
+     */
+    private long lastTimestampNs;
+
+    /**
+     * Starts out at the identity rotation.
+     */
+    public QuaternionSmoothingFilter(float smoothingFactor) {
+        this.factor = smoothingFactor;
+        this.timeConstant = 0;
+        lastValue[0] = 1;
+    }
+
+    /**
+     * @see ExponentialSmoothingFilter#setSmoothingFactor(float)
+     */
+    public void setSmoothingFactor(float factor) {
+        this.factor = factor;
+    }
+
+    /**
+     * @see ExponentialSmoothingFilter#setTimeConstant(float)
+     */
+    public void setTimeConstant(float seconds) {
+        this.timeConstant = seconds;
+    }
+
+    public float getTimeConstant() {
+        return timeConstant;
+    }
+
+    /**
+     * @param q [w, x, y, z] unit quaternion.
+     */
+    public void reset(float[] q) {
+        System.arraycopy(q, 0, lastValue, 0, 4);
+        lastTimestampNs = 0;
+    }
+
+    /**
+     * Resets to the identity rotation.
+     */
+    public void resetToIdentity() {
+        lastValue[0] = 1;
+        lastValue[1] = lastValue[2] = lastValue[3] = 0;
+        lastTimestampNs = 0;
+    }
+
+    /**
+     * Pushes new sample to filter. Until two timestamps are known, the last smoothing factor is
+     * used.
+     *
+     * @param q [w, x, y, z] unit quaternion. Not modified.
+     */
+    public void push(float[] q, long timestampNs) {
+        if (timeConstant > 0 && 0 != lastTimestampNs && timestampNs > lastTimestampNs) {
+            final float dt = (timestampNs - lastTimestampNs) * SECONDS_PER_NANOSECOND;
+            factor = dt / (timeConstant + dt);
+        }
+        lastTimestampNs = timestampNs;
+
+        // q and -q are the same rotation; interpolate towards whichever is closer
+        float dot = 0;
+        for (int i = 0; i < 4; i++) {
+            dot += lastValue[i] * q[i];
+        }
+        final float target = dot < 0 ? -factor : factor;
+        float norm = 0;
+        for (int i = 0; i < 4; i++) {
+            lastValue[i] = lastValue[i] * (1 - factor) + q[i] * target;
+            norm += lastValue[i] * lastValue[i];
+        }
+        if (norm > 0) {
+            norm = (float) (1 / Math.sqrt(norm));
+            for (int i = 0; i < 4; i++) {
+                lastValue[i] *= norm;
+            }
+        }
+    }
+
+    /**
+     * @param qOut receives the smoothed [w, x, y, z] unit quaternion.
+     */
+    public void get(float[] qOut) {
+        System.arraycopy(lastValue, 0, qOut, 0, 4);
+    }
+}
@@ -0,0 +1,92 @@
+package com.jmedeisis.windowview.sensor;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Build;
+
+/**
+ * {@link TiltSource} backed by the device's hardware motion sensors, accessed via
+ * {@link SensorManager}. The SensorManager is looked up when first started.
+ */
+public class SensorManagerTiltSource implements TiltSource, SensorEventListener {
+
+    private final Context context;
+    private SensorManager sensorManager;
+    private SampleListener listener;
+    private int samplingPeriodUs;
+    private int maxReportLatencyUs;
+
+    public SensorManagerTiltSource(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * @param maxReportLatencyUs maximum time samples may be batched in the sensor hub before
+     *                           being delivered, allowing the application processor to sleep in
+     *                           between. 0 to deliver samples as they arrive. Only supported on
+     *                           API 19+; takes effect upon the next
+     *                           {@link #start(SampleListener, int)}.
+     */
+    public void setMaxReportLatency(int maxReportLatencyUs) {
+        this.maxReportLatencyUs = maxReportLatencyUs;
+    }
+
+    public int getMaxReportLatency() {
+        return maxReportLatencyUs;
+    }
+
+    @Override
+    public void start(SampleListener listener, int samplingPeriodUs) {
+        this.listener = listener;
+        this.samplingPeriodUs = samplingPeriodUs;
+        if (null == sensorManager) {
+            sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        }
+        register(Sensor.TYPE_ROTATION_VECTOR, samplingPeriodUs);
+        register(Sensor.TYPE_MAGNETIC_FIELD, samplingPeriodUs);
+        register(Sensor.TYPE_GRAVITY, samplingPeriodUs);
+        register(Sensor.TYPE_ACCELEROMETER, samplingPeriodUs);
+    }
+
+    private void register(int sensorType, int samplingPeriodUs) {
+        final Sensor sensor = sensorManager.getDefaultSensor(sensorType);
+        if (maxReportLatencyUs > 0 && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            sensorManager.registerListener(this, sensor, samplingPeriodUs, maxReportLatencyUs);
+        } else {
+            sensorManager.registerListener(this, sensor, samplingPeriodUs);
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (null != sensorManager) sensorManager.unregisterListener(this);
+        listener = null;
+    }
+
+    @Override
+    public void disableSensor(int sensorType) {
+        if (null == sensorManager) return;
+        sensorManager.unregisterListener(this, sensorManager.getDefaultSensor(sensorType));
+    }
+
+    @Override
+    public void enableSensor(int sensorType) {
+        if (null == listener) return;
+        register(sensorType, samplingPeriodUs);
+    }
+
+    @Override
+    public void onSensorChanged(SensorEvent event) {
+        if (null == listener) return;
+        listener.onSample(event.sensor.getType(), event.values, event.timestamp);
+    }
+
+    @Override
+    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+        if (null == listener) return;
+        listener.onAccuracyChanged(sensor.getType(), accuracy);
+    }
+}
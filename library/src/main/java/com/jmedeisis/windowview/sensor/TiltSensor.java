@@ -2,37 +2,85 @@ package com.jmedeisis.windowview.sensor;
 
 import android.content.Context;
 import android.hardware.Sensor;
-import android.hardware.SensorEvent;
-import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.Display;
 import android.view.Surface;
 import android.view.WindowManager;
+import android.view.animation.DecelerateInterpolator;
+import android.view.animation.Interpolator;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 /**
  * Interprets sensor data to calculate device tilt in terms of yaw, pitch and roll.
- * Requires one of the following sensor combinations to be accessible via {@link SensorManager}:
+ * Requires one of the following sensor combinations to be provided by its {@link TiltSource}
+ * (by default, accessed via {@link SensorManager}):
  * <ul>
  * <li>TYPE_ROTATION_VECTOR</li>
  * <li>TYPE_MAGNETIC_FIELD + TYPE_GRAVITY</li>
  * <li>TYPE_MAGNETIC_FIELD + TYPE_ACCELEROMETER</li>
  * </ul>
  */
-public class TiltSensor implements SensorEventListener {
+public class TiltSensor implements TiltSource.SampleListener {
     // 1 radian = 180 / PI = 57.2957795 degrees
     private static final float DEGREES_PER_RADIAN = 57.2957795f;
 
-    private final SensorManager sensorManager;
+    private final TiltSource source;
 
     private boolean tracking;
 
+    /**
+     * Pass to {@link #startTracking(int)} to derive the sampling period from the display refresh
+     * rate and the current smoothing, re-deriving it as either changes.
+     */
+    public static final int SAMPLING_PERIOD_AUTO = -1;
+    private static final float DEFAULT_REFRESH_RATE = 60;
+    /**
+     * 400Hz, beyond which most sensors will not deliver anyway.
+     */
+    private static final int MIN_AUTO_SAMPLING_PERIOD_US = 2500;
+    private static final float MICROSECONDS_PER_SECOND = 1000000f;
+    private int requestedSamplingPeriodUs;
+    private int samplingPeriodUs;
+    /**
+     * Used for {@link #SAMPLING_PERIOD_AUTO} if there is no {@link #display}.
+     */
+    private float refreshRate = DEFAULT_REFRESH_RATE;
+
     /**
      * @see {@link Display#getRotation()}.
      */
-    private final int screenRotation;
+    private int screenRotation;
+    /**
+     * Axes passed to {@link SensorManager#remapCoordinateSystem(float[], int, int, float[])} for
+     * the current {@link #screenRotation}.
+     */
+    private int remapAxisX;
+    private int remapAxisY;
+    /**
+     * 2x2 row-major rotation of quaternion [x, y] components for the current
+     * {@link #screenRotation}.
+     */
+    private final float[] quaternionRemap = new float[4];
+
+    /**
+     * Used to look up {@link #display}, null if the screen rotation is set manually.
+     */
+    private Context context;
+    /**
+     * Display whose rotation is tracked, null until tracking first starts or if the screen
+     * rotation is set manually.
+     */
+    private Display display;
+    /**
+     * Follows {@link #display} rotation changes while tracking. API 17+ only.
+     */
+    private DisplayChangeMonitor displayMonitor;
 
     private boolean relativeTilt;
 
@@ -53,15 +101,330 @@ public class TiltSensor implements SensorEventListener {
         void onTiltUpdate(float yaw, float pitch, float roll);
     }
 
-    private List<TiltListener> listeners;
+    private List<ListenerRegistration> listeners;
+    /**
+     * Created on first use, on the looper of the thread tilt is dispatched on. Delivers pending
+     * updates of rate-limited listeners in case no further update is dispatched in time.
+     */
+    private Handler pendingTiltHandler;
+    private boolean pendingTiltFlushScheduled;
+    private final Runnable pendingTiltFlush = new Runnable() {
+        @Override
+        public void run() {
+            pendingTiltFlushScheduled = false;
+            flushPendingTilt(System.nanoTime());
+        }
+    };
+
+    /**
+     * A registered {@link TiltListener} with its delivery thresholds, and the state needed to
+     * apply them without allocating during dispatch.
+     */
+    private static class ListenerRegistration {
+        final TiltListener listener;
+        /**
+         * Per axis; 0 or less if the axis is ignored.
+         */
+        final float minYawDelta;
+        final float minPitchDelta;
+        final float minRollDelta;
+        /**
+         * False if every update passes the thresholds.
+         */
+        final boolean thresholded;
+        final long minIntervalNs;
+        boolean delivered;
+        float lastYaw;
+        float lastPitch;
+        float lastRoll;
+        long lastDeliveryNs;
+        /**
+         * True if an update passed the thresholds but came too soon after the last delivery; it
+         * is delivered once {@link #minIntervalNs} has elapsed, unless superseded.
+         */
+        boolean pending;
+        float pendingYaw;
+        float pendingPitch;
+        float pendingRoll;
+
+        ListenerRegistration(TiltListener listener, float minYawDelta, float minPitchDelta,
+                             float minRollDelta, int maxRateHz) {
+            this.listener = listener;
+            this.minYawDelta = minYawDelta;
+            this.minPitchDelta = minPitchDelta;
+            this.minRollDelta = minRollDelta;
+            this.thresholded = minYawDelta > 0 || minPitchDelta > 0 || minRollDelta > 0;
+            this.minIntervalNs = maxRateHz > 0 ? 1000000000L / maxRateHz : 0;
+        }
+
+        /**
+         * @return true if the update is to be delivered now, in which case it is recorded as
+         * delivered. An update that passes the thresholds but comes too soon is kept as pending.
+         */
+        boolean accept(float yaw, float pitch, float roll, long nowNs) {
+            if (delivered) {
+                if (!exceedsThresholds(yaw, pitch, roll)) {
+                    // the listener's last update is still close enough
+                    pending = false;
+                    return false;
+                }
+                if (nowNs - lastDeliveryNs < minIntervalNs) {
+                    pending = true;
+                    pendingYaw = yaw;
+                    pendingPitch = pitch;
+                    pendingRoll = roll;
+                    return false;
+                }
+            }
+            record(yaw, pitch, roll, nowNs);
+            return true;
+        }
+
+        /**
+         * Delivers the pending update, if any and due.
+         */
+        void flush(long nowNs) {
+            if (!pending || nowNs - lastDeliveryNs < minIntervalNs) return;
+            record(pendingYaw, pendingPitch, pendingRoll, nowNs);
+            listener.onTiltUpdate(lastYaw, lastPitch, lastRoll);
+        }
+
+        private boolean exceedsThresholds(float yaw, float pitch, float roll) {
+            return !thresholded
+                    || (minYawDelta > 0 && angleDelta(yaw, lastYaw) >= minYawDelta)
+                    || (minPitchDelta > 0 && Math.abs(pitch - lastPitch) >= minPitchDelta)
+                    || (minRollDelta > 0 && angleDelta(roll, lastRoll) >= minRollDelta);
+        }
+
+        private void record(float yaw, float pitch, float roll, long nowNs) {
+            delivered = true;
+            pending = false;
+            lastYaw = yaw;
+            lastPitch = pitch;
+            lastRoll = roll;
+            lastDeliveryNs = nowNs;
+        }
+
+        /**
+         * @return absolute difference between two angles in degrees, across the -180/180 seam.
+         */
+        private static float angleDelta(float a, float b) {
+            final float delta = Math.abs(a - b) % 360;
+            return delta > 180 ? 360 - delta : delta;
+        }
+    }
+
+    /**
+     * Interface for callback to be invoked when a new orientation is available, for consumers
+     * that work with rotations directly, e.g. 3D transforms, rather than with Euler angles.
+     */
+    public interface OrientationListener {
+        /**
+         * The same orientation as reported to {@link TiltListener}s: remapped to the screen
+         * rotation, relative to the origin if tracking relative orientation, and smoothed with
+         * the same time constant. Not called while yaw is frozen, as the heading is unknown.
+         * Arrays are reused between calls; they are only valid for the duration of the call and
+         * must not be modified.
+         *
+         * @param quaternion [w, x, y, z] unit quaternion.
+         * @param matrix     rotation matrix in the layout of
+         *                   {@link SensorManager#getRotationMatrixFromVector(float[], float[])},
+         *                   of the size requested via
+         *                   {@link TiltSensor#addOrientationListener(OrientationListener, int)},
+         *                   or null if none was requested.
+         * @see TiltSensor#isYawFrozen()
+         */
+        void onOrientationUpdate(float[] quaternion, float[] matrix);
+    }
+
+    private List<OrientationRegistration> orientationListeners;
+
+    private static class OrientationRegistration {
+        final OrientationListener listener;
+        /**
+         * 0, 9 or 16.
+         */
+        final int matrixSize;
+
+        OrientationRegistration(OrientationListener listener, int matrixSize) {
+            this.listener = listener;
+            this.matrixSize = matrixSize;
+        }
+    }
+
+    /**
+     * Decides which sensor events trigger an orientation computation. Matters for the
+     * accelerometer + magnetometer fallback, where the two sensors deliver separate events for
+     * what is effectively one update.
+     */
+    public enum FusionPolicy {
+        /**
+         * Compute after every sensor event of any type.
+         */
+        EVERY_EVENT,
+        /**
+         * Compute only on events of the primary sensor: the rotation vector, or else the gravity
+         * sensor or accelerometer. Magnetometer events only update the latest values.
+         */
+        PRIMARY_SENSOR,
+        /**
+         * Compute once both the accelerometer (or gravity sensor) and the magnetometer have
+         * delivered a new event since the previous computation, i.e. at the rate of the slower
+         * sensor. Every rotation vector event is a complete update.
+         */
+        COMPLETE_UPDATE,
+        /**
+         * Compute at most once per interval set via {@link #setFusionCadence(long)}, regardless
+         * of sensor type.
+         */
+        FIXED_CADENCE
+    }
+
+    private static final FusionPolicy DEFAULT_FUSION_POLICY = FusionPolicy.COMPLETE_UPDATE;
+    /**
+     * ~120Hz.
+     */
+    private static final long DEFAULT_FUSION_CADENCE_US = 8333;
+    private static final long NANOSECONDS_PER_MICROSECOND = 1000L;
+    private FusionPolicy fusionPolicy = DEFAULT_FUSION_POLICY;
+    private long fusionCadenceNs = DEFAULT_FUSION_CADENCE_US * NANOSECONDS_PER_MICROSECOND;
+    private boolean freshAccelData = false;
+    private boolean freshMagData = false;
+    private long lastComputeTimestampNs = 0;
+    private int skippedComputations = 0;
+
+    /**
+     * Named trade-offs between responsiveness and power use, each setting the sampling period,
+     * report latency, sensor preference, filter time constants and computation cadence together.
+     * See {@link #setProfile(Profile)}.
+     */
+    public enum Profile {
+        /**
+         * Samples at up to twice the display refresh rate and computes on every sensor event, with
+         * light smoothing. Listeners are updated as often as the sensors deliver.
+         */
+        LOW_LATENCY(SAMPLING_PERIOD_AUTO, 0, true, 0.005f, 0.2f, FusionPolicy.EVERY_EVENT, 0, 0, 0),
+        /**
+         * The defaults: {@link SensorManager#SENSOR_DELAY_GAME}, rotation vector sensor if
+         * available, one computation per complete accelerometer + magnetometer update.
+         */
+        BALANCED(SensorManager.SENSOR_DELAY_GAME, 0, true, DEFAULT_TIME_CONSTANT_HIGH_ACC,
+                DEFAULT_TIME_CONSTANT_LOW_ACC, FusionPolicy.COMPLETE_UPDATE, 0, 0, 0),
+        /**
+         * Samples at {@link SensorManager#SENSOR_DELAY_UI}, batched for up to 100ms where
+         * supported, from the accelerometer and magnetometer rather than the gyroscope-backed
+         * rotation vector sensor where possible. Computes at most 30 times per second; listeners
+         * that follow the profile's update limits skip changes below 0.1 degrees.
+         */
+        BATTERY_SAVER(SensorManager.SENSOR_DELAY_UI, 100000, false, 0.05f,
+                DEFAULT_TIME_CONSTANT_LOW_ACC, FusionPolicy.FIXED_CADENCE, 33333, 0.1f, 30);
+
+        final int samplingPeriodUs;
+        final int maxReportLatencyUs;
+        final boolean preferRotationVector;
+        final float timeConstantHighAcc;
+        final float timeConstantLowAcc;
+        final FusionPolicy fusionPolicy;
+        final long fusionCadenceUs;
+        final float minUpdateDelta;
+        final int maxUpdateRateHz;
+
+        Profile(int samplingPeriodUs, int maxReportLatencyUs, boolean preferRotationVector,
+                float timeConstantHighAcc, float timeConstantLowAcc, FusionPolicy fusionPolicy,
+                long fusionCadenceUs, float minUpdateDelta, int maxUpdateRateHz) {
+            this.samplingPeriodUs = samplingPeriodUs;
+            this.maxReportLatencyUs = maxReportLatencyUs;
+            this.preferRotationVector = preferRotationVector;
+            this.timeConstantHighAcc = timeConstantHighAcc;
+            this.timeConstantLowAcc = timeConstantLowAcc;
+            this.fusionPolicy = fusionPolicy;
+            this.fusionCadenceUs = fusionCadenceUs;
+            this.minUpdateDelta = minUpdateDelta;
+            this.maxUpdateRateHz = maxUpdateRateHz;
+        }
+
+        /**
+         * @return sampling period to pass to {@link TiltSensor#startTracking(int)}.
+         */
+        public int getSamplingPeriod() {
+            return samplingPeriodUs;
+        }
+
+        /**
+         * @return minimum change (in degrees) for a listener registered via
+         * {@link TiltSensor#addListener(TiltListener, float, int)} to be updated.
+         */
+        public float getMinUpdateDelta() {
+            return minUpdateDelta;
+        }
+
+        /**
+         * @return maximum update rate for a listener registered via
+         * {@link TiltSensor#addListener(TiltListener, float, int)}, 0 for no limit.
+         */
+        public int getMaxUpdateRate() {
+            return maxUpdateRateHz;
+        }
+    }
+
+    private Profile profile;
+    private boolean preferRotationVector = true;
+
+    /**
+     * Returned by {@link #getSensorAccuracy()} until the sensor in use has reported its accuracy.
+     */
+    public static final int ACCURACY_UNKNOWN = Integer.MIN_VALUE;
+    /**
+     * While yaw is frozen, the magnetometer is switched off and re-enabled after this interval to
+     * check whether it has recovered, e.g. once moved away from magnetic interference.
+     */
+    private static final long MAG_RETRY_INTERVAL_MS = 10000;
+    /**
+     * How long a re-enabled magnetometer is given to report a usable accuracy.
+     */
+    private static final long MAG_PROBE_WINDOW_MS = 2000;
+    private int rotationVectorAccuracy = ACCURACY_UNKNOWN;
+    private int magneticFieldAccuracy = ACCURACY_UNKNOWN;
+    /**
+     * True while the magnetometer is unreliable and orientation is derived from the accelerometer
+     * (or gravity sensor) alone. Yaw is then held at its last value.
+     */
+    private boolean yawFrozen = false;
+    private boolean magDisabled = false;
+    /**
+     * Sensor time at which to re-enable the magnetometer, or to give up on it again; 0 if not yet
+     * known.
+     */
+    private long magRetryAtNs = 0;
+    private long magProbeEndNs = 0;
+    /**
+     * True if the relative orientation origin was captured while yaw was frozen, so that it has an
+     * arbitrary heading.
+     */
+    private boolean rotOriginWithoutHeading = false;
+    /**
+     * Stand-in for the magnetic field vector while yaw is frozen, see
+     * {@link #computeRotationMatrix()}.
+     */
+    private final float[] headingReference = new float[3];
+    private final float[] originOrientation = new float[3];
 
     private final float[] rotationMatrix = new float[9];
     private final float[] rotationMatrixTemp = new float[9];
     private final float[] rotationMatrixOrigin = new float[9];
     /**
-     * [w, x, y, z]
+     * {@link #rotationMatrixOrigin} before remapping to the screen rotation.
+     */
+    private final float[] rotationMatrixOriginRaw = new float[9];
+    /**
+     * [w, x, y, z], as reported by the rotation vector sensor.
      */
     private final float[] latestQuaternion = new float[4];
+    /**
+     * [w, x, y, z], {@link #latestQuaternion} remapped to the screen rotation. Kept apart so that
+     * computations triggered by other sensors do not remap the same sample twice.
+     */
+    private final float[] remappedQuaternion = new float[4];
     /**
      * [w, x, y, z]
      */
@@ -70,6 +433,16 @@ public class TiltSensor implements SensorEventListener {
      * [w, x, y, z]
      */
     private final float[] rotationQuaternion = new float[4];
+    /**
+     * {@link #rotationMatrix} relative to {@link #rotationMatrixOrigin}.
+     */
+    private final float[] relativeRotationMatrix = new float[9];
+    /**
+     * Smoothed orientation passed to {@link OrientationListener}s, [w, x, y, z].
+     */
+    private final float[] orientationQuaternion = new float[4];
+    private final float[] orientationMatrix3 = new float[9];
+    private final float[] orientationMatrix4 = new float[16];
     private final float[] latestAccelerations = new float[3];
     private final float[] latestMagFields = new float[3];
     private final float[] orientation = new float[3];
@@ -80,30 +453,123 @@ public class TiltSensor implements SensorEventListener {
     private boolean haveQuatOrigin = false;
     private boolean haveRotVecData = false;
 
-    private Filter yawFilter;
-    private Filter pitchFilter;
-    private Filter rollFilter;
+    private ExponentialSmoothingFilter yawFilter;
+    private ExponentialSmoothingFilter pitchFilter;
+    private ExponentialSmoothingFilter rollFilter;
+    private QuaternionSmoothingFilter orientationFilter;
+    /**
+     * False until {@link #orientationFilter} has been seeded, as it is not updated while there are
+     * no {@link OrientationListener}s.
+     */
+    private boolean haveOrientationSeed = false;
+
+    /**
+     * In seconds. See {@link ExponentialSmoothingFilter#setTimeConstant(float)}.
+     * Equivalent to smoothing factors of 0.8 and 0.05 at {@link SensorManager#SENSOR_DELAY_GAME}.
+     */
+    private static final float DEFAULT_TIME_CONSTANT_HIGH_ACC = 0.005f;
+    private static final float DEFAULT_TIME_CONSTANT_LOW_ACC = 0.38f;
+    private float timeConstantHighAcc;
+    private float timeConstantLowAcc;
+    /**
+     * In seconds. Used to derive the smoothing factor of a new filter until it has received two
+     * timestamped samples. Matches {@link SensorManager#SENSOR_DELAY_GAME}.
+     */
+    private static final float NOMINAL_SAMPLING_PERIOD = 0.02f;
 
     /**
-     * See {@link ExponentialSmoothingFilter#setSmoothingFactor(float)}.
+     * Filters are seeded from the first sample after tracking starts, unless a previous state
+     * was restored via {@link #restoreTilt(float, float, float)}. For a short window afterwards,
+     * they use a fraction of the steady-state time constant to converge quickly.
      */
-    private static final float SMOOTHING_FACTOR_HIGH_ACC = 0.8f;
-    private static final float SMOOTHING_FACTOR_LOW_ACC = 0.05f;
+    private static final long DEFAULT_CONVERGENCE_WINDOW_MS = 250;
+    private static final float CONVERGENCE_TIME_CONSTANT_FRACTION = 0.1f;
+    private static final long NANOSECONDS_PER_MILLISECOND = 1000000L;
+    private long convergenceWindowNs;
+    private long convergenceEndNs;
+    private boolean converging = false;
+    private boolean haveFilterSeed = false;
+    private boolean haveRestoredTilt = false;
 
+    /**
+     * Animates {@link #resetOrigin(boolean)} transitions on the frame clock.
+     */
+    public static final long DEFAULT_ORIGIN_RESET_DURATION_MS = 400;
+    private final OriginResetAnimator originResetAnimator;
+    private final float[] originResetOffset = new float[3];
+    /**
+     * Created on first use on the main thread. While running, dispatches tilt once per frame in
+     * place of the sensor path, for as long as {@link #originResetAnimator} runs.
+     */
+    private FrameTicker originResetTicker;
+
+    /**
+     * Layout of the array returned by {@link #saveState()}.
+     */
+    private static final int STATE_SCREEN_ROTATION = 0;
+    private static final int STATE_TILT = 1;
+    private static final int STATE_HAVE_QUAT_ORIGIN = 4;
+    private static final int STATE_QUAT_ORIGIN = 5;
+    private static final int STATE_HAVE_ROT_ORIGIN = 9;
+    private static final int STATE_ROT_ORIGIN = 10;
+    private static final int STATE_LENGTH = 19;
+
+    /**
+     * System services are looked up once tracking first starts, so construction is cheap.
+     */
     public TiltSensor(Context context, boolean trackRelativeOrientation) {
+        this(new SensorManagerTiltSource(context), Surface.ROTATION_0, trackRelativeOrientation);
+        this.context = context;
+    }
+
+    /**
+     * @param source         provider of raw sensor samples.
+     * @param screenRotation see {@link Display#getRotation()}.
+     */
+    public TiltSensor(TiltSource source, int screenRotation, boolean trackRelativeOrientation) {
         listeners = new ArrayList<>();
+        orientationListeners = new ArrayList<>();
 
-        initialiseDefaultFilters(SMOOTHING_FACTOR_LOW_ACC);
+        timeConstantHighAcc = DEFAULT_TIME_CONSTANT_HIGH_ACC;
+        timeConstantLowAcc = DEFAULT_TIME_CONSTANT_LOW_ACC;
+        convergenceWindowNs = DEFAULT_CONVERGENCE_WINDOW_MS * NANOSECONDS_PER_MILLISECOND;
+        originResetAnimator = new OriginResetAnimator(
+                DEFAULT_ORIGIN_RESET_DURATION_MS * NANOSECONDS_PER_MILLISECOND,
+                new DecelerateInterpolator());
+        initialiseDefaultFilters(timeConstantLowAcc);
 
-        sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
+        this.source = source;
         tracking = false;
 
-        screenRotation = ((WindowManager) context.getSystemService(Context.WINDOW_SERVICE))
-                .getDefaultDisplay().getRotation();
+        this.screenRotation = screenRotation;
+        computeScreenRotationRemap();
 
         this.relativeTilt = trackRelativeOrientation;
     }
 
+    private static Display getDefaultDisplay(Context context) {
+        return ((WindowManager) context.getSystemService(Context.WINDOW_SERVICE))
+                .getDefaultDisplay();
+    }
+
+    /**
+     * Looks up the display to track the rotation of, if this sensor was created with a Context.
+     */
+    private void initDisplay() {
+        if (null == context || null != display) return;
+        display = getDefaultDisplay(context);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+            displayMonitor = new DisplayChangeMonitor(context, display,
+                    new DisplayChangeMonitor.Callback() {
+                        @Override
+                        public void onDisplayChanged(Display display) {
+                            setScreenRotation(display.getRotation());
+                            updateAutoSamplingPeriod();
+                        }
+                    });
+        }
+    }
+
     /**
      * Registers for motion sensor events.
      * Do this to begin receiving {@link TiltListener#onTiltUpdate(float, float, float)} callbacks.
@@ -111,20 +577,169 @@ public class TiltSensor implements SensorEventListener {
      * <b>You must call {@link #stopTracking()} to unregister when tilt updates are no longer
      * needed.</b>
      *
-     * @param samplingPeriodUs see {@link SensorManager#registerListener(SensorEventListener, Sensor, int)}
+     * @param samplingPeriodUs see {@link SensorManager#registerListener(android.hardware.SensorEventListener, Sensor, int)},
+     *                         or {@link #SAMPLING_PERIOD_AUTO}.
      */
     public void startTracking(int samplingPeriodUs) {
-        sensorManager.registerListener(this,
-                sensorManager.getDefaultSensor(Sensor.TYPE_ROTATION_VECTOR), samplingPeriodUs);
-        sensorManager.registerListener(this,
-                sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD), samplingPeriodUs);
-        sensorManager.registerListener(this,
-                sensorManager.getDefaultSensor(Sensor.TYPE_GRAVITY), samplingPeriodUs);
-        sensorManager.registerListener(this,
-                sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER), samplingPeriodUs);
+        initDisplay();
+        if (null != display) {
+            // rotation may have changed while not tracking
+            setScreenRotation(display.getRotation());
+        }
+        if (null != displayMonitor) displayMonitor.start();
+        requestedSamplingPeriodUs = samplingPeriodUs;
+        this.samplingPeriodUs = resolveSamplingPeriod(samplingPeriodUs);
+        source.start(this, this.samplingPeriodUs);
         tracking = true;
     }
 
+    /**
+     * @return sampling period requested of the {@link TiltSource} while tracking, in microseconds
+     * or as one of the SensorManager SENSOR_DELAY_* constants. Resolved if tracking was started
+     * with {@link #SAMPLING_PERIOD_AUTO}.
+     */
+    public int getSamplingPeriod() {
+        return samplingPeriodUs;
+    }
+
+    /**
+     * @param hz display refresh rate used for {@link #SAMPLING_PERIOD_AUTO} if this sensor was not
+     *           created with a Context, and so does not track the display itself.
+     */
+    public void setRefreshRate(float hz) {
+        this.refreshRate = hz;
+        updateAutoSamplingPeriod();
+    }
+
+    /**
+     * Aims for one fresh sample per frame when smoothing is heavy, as the output then changes
+     * little between samples, and two when smoothing is lighter than a frame, so that each frame
+     * reflects sensor data younger than the frame interval.
+     */
+    private int resolveSamplingPeriod(int requestedSamplingPeriodUs) {
+        return SAMPLING_PERIOD_AUTO == requestedSamplingPeriodUs ?
+                computeAutoSamplingPeriod() : requestedSamplingPeriodUs;
+    }
+
+    private int computeAutoSamplingPeriod() {
+        float hz = null != display ? display.getRefreshRate() : refreshRate;
+        if (hz <= 0) hz = DEFAULT_REFRESH_RATE;
+        final float frameIntervalUs = MICROSECONDS_PER_SECOND / hz;
+        final float timeConstantUs = (haveRotVecData ? timeConstantHighAcc : timeConstantLowAcc)
+                * MICROSECONDS_PER_SECOND;
+        final int samplesPerFrame = timeConstantUs < frameIntervalUs ? 2 : 1;
+        return Math.max(MIN_AUTO_SAMPLING_PERIOD_US, (int) (frameIntervalUs / samplesPerFrame));
+    }
+
+    /**
+     * Restarts the source at a re-derived sampling period, if tracking with
+     * {@link #SAMPLING_PERIOD_AUTO} and the period has changed. Filter state is kept.
+     */
+    private void updateAutoSamplingPeriod() {
+        if (!tracking || SAMPLING_PERIOD_AUTO != requestedSamplingPeriodUs) return;
+        final int period = computeAutoSamplingPeriod();
+        if (period == samplingPeriodUs) return;
+        samplingPeriodUs = period;
+        restartSource();
+    }
+
+    /**
+     * Restarts the source, if tracking, to apply a new sampling period, report latency or sensor
+     * preference. Filter state and orientation origin are kept.
+     */
+    private void restartSource() {
+        if (!tracking) return;
+        // the source re-enables all sensors upon restarting
+        magDisabled = false;
+        magRetryAtNs = 0;
+        magProbeEndNs = 0;
+        source.stop();
+        source.start(this, samplingPeriodUs);
+    }
+
+    /**
+     * Applies the given profile's settings, replacing any set individually. While tracking, the
+     * new sampling period, report latency and sensor preference take effect by restarting the
+     * {@link TiltSource} at most once; the orientation origin and filter state are kept, so tilt
+     * continues smoothly. Otherwise, pass {@link Profile#getSamplingPeriod()} to
+     * {@link #startTracking(int)}.
+     */
+    public void setProfile(Profile profile) {
+        this.profile = profile;
+        timeConstantHighAcc = profile.timeConstantHighAcc;
+        timeConstantLowAcc = profile.timeConstantLowAcc;
+        initialiseDefaultFilters(getCurrentTimeConstant());
+        fusionPolicy = profile.fusionPolicy;
+        fusionCadenceNs = profile.fusionCadenceUs * NANOSECONDS_PER_MICROSECOND;
+
+        boolean restart = applyPreferRotationVector(profile.preferRotationVector);
+        restart |= applyMaxReportLatency(profile.maxReportLatencyUs);
+        if (tracking) {
+            requestedSamplingPeriodUs = profile.samplingPeriodUs;
+            final int period = resolveSamplingPeriod(requestedSamplingPeriodUs);
+            restart |= period != samplingPeriodUs;
+            samplingPeriodUs = period;
+        }
+        if (restart) restartSource();
+    }
+
+    /**
+     * @return profile last set via {@link #setProfile(Profile)}, or null if none.
+     */
+    public Profile getProfile() {
+        return profile;
+    }
+
+    /**
+     * @param prefer if false, magnetic field + gravity / accelerometer data is used in place of
+     *               the rotation vector sensor whenever available, as the latter also runs the
+     *               gyroscope on most devices. True by default. Switching while tracking keeps the
+     *               orientation origin and filter state.
+     */
+    public void setPreferRotationVector(boolean prefer) {
+        if (applyPreferRotationVector(prefer)) restartSource();
+    }
+
+    public boolean isPreferRotationVector() {
+        return preferRotationVector;
+    }
+
+    /**
+     * @return true if the source needs restarting for the change to take effect.
+     */
+    private boolean applyPreferRotationVector(boolean prefer) {
+        if (prefer == preferRotationVector) return false;
+        preferRotationVector = prefer;
+        if (haveRotVecData) {
+            // the other sensors were switched off; wait for fresh samples before switching over
+            haveGravData = false;
+            haveAccelData = false;
+            haveMagData = false;
+        }
+        return prefer != haveRotVecData;
+    }
+
+    /**
+     * Only applies to the default {@link SensorManagerTiltSource}; other sources are configured
+     * directly.
+     *
+     * @see SensorManagerTiltSource#setMaxReportLatency(int)
+     */
+    public void setMaxReportLatency(int maxReportLatencyUs) {
+        if (applyMaxReportLatency(maxReportLatencyUs)) restartSource();
+    }
+
+    /**
+     * @return true if the source needs restarting for the change to take effect.
+     */
+    private boolean applyMaxReportLatency(int maxReportLatencyUs) {
+        if (!(source instanceof SensorManagerTiltSource)) return false;
+        final SensorManagerTiltSource sensorManagerSource = (SensorManagerTiltSource) source;
+        if (maxReportLatencyUs == sensorManagerSource.getMaxReportLatency()) return false;
+        sensorManagerSource.setMaxReportLatency(maxReportLatencyUs);
+        return true;
+    }
+
     public boolean isTracking() {
         return tracking;
     }
@@ -133,19 +748,101 @@ public class TiltSensor implements SensorEventListener {
      * Unregisters from motion sensor events.
      */
     public void stopTracking() {
-        sensorManager.unregisterListener(this);
-        if (null != yawFilter) yawFilter.reset(0);
-        if (null != pitchFilter) pitchFilter.reset(0);
-        if (null != rollFilter) rollFilter.reset(0);
+        source.stop();
+        if (null != displayMonitor) displayMonitor.stop();
+        // filters are re-seeded from the first sample once tracking resumes
+        haveFilterSeed = false;
+        freshAccelData = false;
+        freshMagData = false;
+        lastComputeTimestampNs = 0;
+        // the source re-enables the magnetometer upon restarting
+        magDisabled = false;
+        magRetryAtNs = 0;
+        magProbeEndNs = 0;
+        originResetAnimator.cancel();
+        if (null != originResetTicker) originResetTicker.stop();
         tracking = false;
     }
 
     public void addListener(TiltListener listener) {
-        listeners.add(listener);
+        listeners.add(new ListenerRegistration(listener, 0, 0, 0, 0));
+    }
+
+    /**
+     * Adds a listener that is only notified of updates that differ meaningfully from the last one
+     * it received, at no more than the given rate. Skipped updates cost a few comparisons.
+     *
+     * @param minDelta  minimum change (in degrees) in any of yaw, pitch or roll since the last
+     *                  update delivered to the listener. 0 for any change.
+     * @param maxRateHz maximum number of updates per second. 0 for no limit.
+     */
+    public void addListener(TiltListener listener, float minDelta, int maxRateHz) {
+        addListener(listener, minDelta, minDelta, minDelta, maxRateHz);
+    }
+
+    /**
+     * As {@link #addListener(TiltListener, float, int)}, with separate thresholds per axis. An
+     * update is delivered if any axis has changed by at least its threshold. An axis with a
+     * threshold of 0 or less is ignored, e.g. (5, 0, 0) only delivers changes in yaw; if all
+     * three are, every update is delivered.
+     */
+    public void addListener(TiltListener listener, float minYawDelta, float minPitchDelta,
+                            float minRollDelta, int maxRateHz) {
+        listeners.add(new ListenerRegistration(listener, minYawDelta, minPitchDelta, minRollDelta,
+                maxRateHz));
     }
 
     public void removeListener(TiltListener listener) {
-        listeners.remove(listener);
+        for (int i = 0; i < listeners.size(); i++) {
+            if (listeners.get(i).listener == listener) {
+                listeners.remove(i);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Subscribes to tilt updates delivered on the given executor, e.g. a background thread for
+     * expensive per-update work, with the given backpressure strategy. Unlike a
+     * {@link TiltListener}, a slow subscriber never holds up this sensor or its other listeners.
+     * Must be called on the thread that tilt updates are dispatched on.
+     *
+     * @return subscription, to be cancelled via {@link TiltSubscription#cancel()} once no longer
+     * needed.
+     */
+    public TiltSubscription subscribe(TiltSubscription.Subscriber subscriber, Executor executor,
+                                      TiltSubscription.Strategy strategy) {
+        final TiltSubscription subscription =
+                new TiltSubscription(this, subscriber, executor, strategy);
+        addListener(subscription);
+        return subscription;
+    }
+
+    public void addOrientationListener(OrientationListener listener) {
+        addOrientationListener(listener, 0);
+    }
+
+    /**
+     * Adds a listener for the orientation as a quaternion and, optionally, a rotation matrix.
+     * While only {@link OrientationListener}s are registered, no Euler angles are computed.
+     *
+     * @param matrixSize 9 for a 3x3 rotation matrix, 16 for a 4x4 one, or 0 for none.
+     */
+    public void addOrientationListener(OrientationListener listener, int matrixSize) {
+        if (0 != matrixSize && 9 != matrixSize && 16 != matrixSize) {
+            throw new IllegalArgumentException("Matrix size must be 0, 9 or 16.");
+        }
+        if (orientationListeners.isEmpty()) haveOrientationSeed = false;
+        orientationListeners.add(new OrientationRegistration(listener, matrixSize));
+    }
+
+    public void removeOrientationListener(OrientationListener listener) {
+        for (int i = 0; i < orientationListeners.size(); i++) {
+            if (orientationListeners.get(i).listener == listener) {
+                orientationListeners.remove(i);
+                return;
+            }
+        }
     }
 
     public void setTrackRelativeOrientation(boolean trackRelative) {
@@ -160,60 +857,351 @@ public class TiltSensor implements SensorEventListener {
     }
 
     /**
-     * @param factor see {@link ExponentialSmoothingFilter#setSmoothingFactor(float)}
+     * Updates the screen rotation that orientation values are remapped to. Any relative
+     * orientation origin is remapped as well, so tracking continues without needing to
+     * re-converge.
+     * <p>
+     * Not usually necessary when this TiltSensor was constructed with a {@link Context}, as the
+     * default display's rotation is then followed automatically.
+     *
+     * @param screenRotation see {@link Display#getRotation()}.
+     */
+    public void setScreenRotation(int screenRotation) {
+        if (this.screenRotation == screenRotation) return;
+
+        if (haveQuatOrigin) {
+            // undo previous remap (inverse is the transpose), then apply new one
+            remapQuaternion(invQuaternionOrigin, quaternionRemap[0], quaternionRemap[2],
+                    quaternionRemap[1], quaternionRemap[3]);
+        }
+        this.screenRotation = screenRotation;
+        computeScreenRotationRemap();
+        if (haveQuatOrigin) {
+            remapQuaternion(invQuaternionOrigin, quaternionRemap[0], quaternionRemap[1],
+                    quaternionRemap[2], quaternionRemap[3]);
+        }
+        if (haveRotOrigin) {
+            SensorManager.remapCoordinateSystem(rotationMatrixOriginRaw,
+                    remapAxisX, remapAxisY, rotationMatrixOrigin);
+        }
+    }
+
+    /**
+     * Precomputes {@link #remapAxisX}, {@link #remapAxisY} and {@link #quaternionRemap} for the
+     * current {@link #screenRotation}.
+     */
+    private void computeScreenRotationRemap() {
+        switch (screenRotation) {
+            case Surface.ROTATION_90:
+                remapAxisX = SensorManager.AXIS_Y;
+                remapAxisY = SensorManager.AXIS_MINUS_X;
+                setQuaternionRemap(0, -1, 1, 0);
+                break;
+            case Surface.ROTATION_180:
+                remapAxisX = SensorManager.AXIS_MINUS_X;
+                remapAxisY = SensorManager.AXIS_MINUS_Y;
+                setQuaternionRemap(-1, 0, 0, -1);
+                break;
+            case Surface.ROTATION_270:
+                remapAxisX = SensorManager.AXIS_MINUS_Y;
+                remapAxisY = SensorManager.AXIS_X;
+                setQuaternionRemap(0, 1, -1, 0);
+                break;
+            case Surface.ROTATION_0:
+            default:
+                remapAxisX = SensorManager.AXIS_X;
+                remapAxisY = SensorManager.AXIS_Y;
+                setQuaternionRemap(1, 0, 0, 1);
+                break;
+        }
+    }
+
+    private void setQuaternionRemap(float xx, float xy, float yx, float yy) {
+        quaternionRemap[0] = xx;
+        quaternionRemap[1] = xy;
+        quaternionRemap[2] = yx;
+        quaternionRemap[3] = yy;
+    }
+
+    /**
+     * Sets the smoothing applied to yaw, pitch and roll. Since the filters derive their smoothing
+     * factor from sensor event timestamps, the response does not depend on the sampling period.
+     *
+     * @param highAccuracySeconds time constant used when {@link Sensor#TYPE_ROTATION_VECTOR} data
+     *                            is available.
+     * @param lowAccuracySeconds  time constant used for the noisier magnetic field +
+     *                            gravity / accelerometer data.
+     * @see ExponentialSmoothingFilter#setTimeConstant(float)
+     */
+    public void setFilterTimeConstants(float highAccuracySeconds, float lowAccuracySeconds) {
+        this.timeConstantHighAcc = highAccuracySeconds;
+        this.timeConstantLowAcc = lowAccuracySeconds;
+        initialiseDefaultFilters(getCurrentTimeConstant());
+        updateAutoSamplingPeriod();
+    }
+
+    /**
+     * @param durationMs duration of the high-gain convergence window after the filters are seeded
+     *                   upon starting tracking. 0 to switch to steady-state smoothing immediately.
+     */
+    public void setConvergenceWindow(long durationMs) {
+        this.convergenceWindowNs = durationMs * NANOSECONDS_PER_MILLISECOND;
+    }
+
+    /**
+     * Seeds the filters with a last known tilt, e.g. from a previous session, instead of the first
+     * sample received once tracking starts. The filters then converge from this state to the
+     * measured tilt during the convergence window (see {@link #setConvergenceWindow(long)}).
+     * <p>
+     * Tilt values are as per {@link TiltListener#onTiltUpdate(float, float, float)}. In relative
+     * mode, these are only meaningful if the corresponding orientation origin is also kept.
+     */
+    public void restoreTilt(float yaw, float pitch, float roll) {
+        if (null != yawFilter) yawFilter.reset(yaw);
+        if (null != pitchFilter) pitchFilter.reset(pitch);
+        if (null != rollFilter) rollFilter.reset(roll);
+        haveFilterSeed = false;
+        haveRestoredTilt = true;
+    }
+
+    /**
+     * Captures the tilt origin and filter state in a compact form, e.g. to be retained across
+     * configuration changes or shared between sessions. See {@link #restoreState(float[])}.
+     */
+    public float[] saveState() {
+        final float[] state = new float[STATE_LENGTH];
+        state[STATE_SCREEN_ROTATION] = screenRotation;
+        state[STATE_TILT] = null == yawFilter ? 0 : yawFilter.get();
+        state[STATE_TILT + 1] = null == pitchFilter ? 0 : pitchFilter.get();
+        state[STATE_TILT + 2] = null == rollFilter ? 0 : rollFilter.get();
+        state[STATE_HAVE_QUAT_ORIGIN] = haveQuatOrigin ? 1 : 0;
+        System.arraycopy(invQuaternionOrigin, 0, state, STATE_QUAT_ORIGIN, 4);
+        state[STATE_HAVE_ROT_ORIGIN] = haveRotOrigin ? 1 : 0;
+        System.arraycopy(rotationMatrixOriginRaw, 0, state, STATE_ROT_ORIGIN, 9);
+        return state;
+    }
+
+    /**
+     * Restores state previously captured via {@link #saveState()}, so that tracking resumes with
+     * the same orientation origin and filter state. The origin is remapped if the screen rotation
+     * has changed in the meantime.
+     *
+     * @throws IllegalArgumentException if the given state is malformed.
+     */
+    public void restoreState(float[] state) {
+        if (null == state || STATE_LENGTH != state.length) {
+            throw new IllegalArgumentException("Invalid TiltSensor state.");
+        }
+        final int currentScreenRotation = screenRotation;
+
+        // restore origin in the frame of the screen rotation it was saved with...
+        screenRotation = (int) state[STATE_SCREEN_ROTATION];
+        computeScreenRotationRemap();
+        haveQuatOrigin = 0 != state[STATE_HAVE_QUAT_ORIGIN];
+        System.arraycopy(state, STATE_QUAT_ORIGIN, invQuaternionOrigin, 0, 4);
+        haveRotOrigin = 0 != state[STATE_HAVE_ROT_ORIGIN];
+        rotOriginWithoutHeading = false;
+        System.arraycopy(state, STATE_ROT_ORIGIN, rotationMatrixOriginRaw, 0, 9);
+        if (haveRotOrigin) {
+            SensorManager.remapCoordinateSystem(rotationMatrixOriginRaw,
+                    remapAxisX, remapAxisY, rotationMatrixOrigin);
+        }
+        // ...then remap to the current one
+        setScreenRotation(currentScreenRotation);
+
+        restoreTilt(state[STATE_TILT], state[STATE_TILT + 1], state[STATE_TILT + 2]);
+    }
+
+    /**
+     * @return steady-state time constant for the chosen sensor data and its accuracy, reduced
+     * while converging.
+     */
+    private float getCurrentTimeConstant() {
+        float timeConstant = haveRotVecData ?
+                timeConstantHighAcc * getAccuracyTimeConstantScale(rotationVectorAccuracy) :
+                timeConstantLowAcc * (yawFrozen ?
+                        1 : getAccuracyTimeConstantScale(magneticFieldAccuracy));
+        return converging ? timeConstant * CONVERGENCE_TIME_CONSTANT_FRACTION : timeConstant;
+    }
+
+    /**
+     * Smooths less when the sensor that yaw is derived from reports high accuracy, more when it
+     * reports low accuracy.
      */
-    private void initialiseDefaultFilters(float factor) {
-        yawFilter = new ExponentialSmoothingFilter(factor, null == yawFilter ? 0 : yawFilter.get());
-        pitchFilter = new ExponentialSmoothingFilter(factor, null == pitchFilter ? 0 : pitchFilter.get());
-        rollFilter = new ExponentialSmoothingFilter(factor, null == rollFilter ? 0 : rollFilter.get());
+    private static float getAccuracyTimeConstantScale(int accuracy) {
+        switch (accuracy) {
+            case SensorManager.SENSOR_STATUS_ACCURACY_HIGH:
+                return 0.5f;
+            case SensorManager.SENSOR_STATUS_ACCURACY_LOW:
+            case SensorManager.SENSOR_STATUS_UNRELIABLE:
+                return 2;
+            case SensorManager.SENSOR_STATUS_ACCURACY_MEDIUM:
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Creates the filters on first use, afterwards updates them in place, so that switching time
+     * constants while tracking does not allocate.
+     *
+     * @param timeConstant see {@link ExponentialSmoothingFilter#setTimeConstant(float)}
+     */
+    private void initialiseDefaultFilters(float timeConstant) {
+        if (null == yawFilter) {
+            // yaw and roll range from -180 to 180 degrees
+            yawFilter = createDefaultFilter(360);
+            pitchFilter = createDefaultFilter(0);
+            rollFilter = createDefaultFilter(360);
+            orientationFilter = new QuaternionSmoothingFilter(1);
+        }
+        configureDefaultFilter(yawFilter, timeConstant);
+        configureDefaultFilter(pitchFilter, timeConstant);
+        configureDefaultFilter(rollFilter, timeConstant);
+        orientationFilter.setSmoothingFactor(
+                NOMINAL_SAMPLING_PERIOD / (timeConstant + NOMINAL_SAMPLING_PERIOD));
+        orientationFilter.setTimeConstant(timeConstant);
+    }
+
+    private static ExponentialSmoothingFilter createDefaultFilter(float period) {
+        ExponentialSmoothingFilter filter = new ExponentialSmoothingFilter(1, 0);
+        filter.setWrapAround(period);
+        return filter;
+    }
+
+    private static void configureDefaultFilter(ExponentialSmoothingFilter filter,
+                                               float timeConstant) {
+        // used until two timestamps are known
+        filter.setSmoothingFactor(
+                NOMINAL_SAMPLING_PERIOD / (timeConstant + NOMINAL_SAMPLING_PERIOD));
+        filter.setTimeConstant(timeConstant);
+    }
+
+    public TiltSource getSource() {
+        return source;
     }
 
     @Override
-    public void onSensorChanged(SensorEvent event) {
-        switch (event.sensor.getType()) {
+    public void onSample(int sensorType, float[] values, long timestampNs) {
+        switch (sensorType) {
             case Sensor.TYPE_ROTATION_VECTOR:
-                SensorManager.getQuaternionFromVector(latestQuaternion, event.values);
+                if (!preferRotationVector && haveMagData && (haveGravData || haveAccelData)) {
+                    // magnetic field + gravity / accelerometer data is available and preferred
+                    source.disableSensor(Sensor.TYPE_ROTATION_VECTOR);
+                    if (haveRotVecData) {
+                        haveRotVecData = false;
+                        if (haveQuatOrigin) convertQuaternionOriginToMatrix();
+                        updateYawFrozen();
+                        initialiseDefaultFilters(getCurrentTimeConstant());
+                    }
+                    return;
+                }
+                SensorManager.getQuaternionFromVector(latestQuaternion, values);
                 if (!haveRotVecData) {
-                    initialiseDefaultFilters(SMOOTHING_FACTOR_HIGH_ACC);
+                    haveRotVecData = true;
+                    if (haveRotOrigin) convertMatrixOriginToQuaternion();
+                    updateYawFrozen();
+                    initialiseDefaultFilters(getCurrentTimeConstant());
+                    updateAutoSamplingPeriod();
                 }
-                haveRotVecData = true;
                 break;
             case Sensor.TYPE_GRAVITY:
-                if (haveRotVecData) {
+                if (haveRotVecData && preferRotationVector) {
                     // rotation vector sensor data is better
-                    sensorManager.unregisterListener(this,
-                            sensorManager.getDefaultSensor(Sensor.TYPE_GRAVITY));
-                    break;
+                    source.disableSensor(Sensor.TYPE_GRAVITY);
+                    return;
                 }
-                System.arraycopy(event.values, 0, latestAccelerations, 0, 3);
+                System.arraycopy(values, 0, latestAccelerations, 0, 3);
                 haveGravData = true;
+                freshAccelData = true;
                 break;
             case Sensor.TYPE_ACCELEROMETER:
-                if (haveGravData || haveRotVecData) {
+                if (haveGravData || (haveRotVecData && preferRotationVector)) {
                     // rotation vector / gravity sensor data is better!
                     // let's not listen to the accelerometer anymore
-                    sensorManager.unregisterListener(this,
-                            sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
-                    break;
+                    source.disableSensor(Sensor.TYPE_ACCELEROMETER);
+                    return;
                 }
-                System.arraycopy(event.values, 0, latestAccelerations, 0, 3);
+                System.arraycopy(values, 0, latestAccelerations, 0, 3);
                 haveAccelData = true;
+                freshAccelData = true;
                 break;
             case Sensor.TYPE_MAGNETIC_FIELD:
-                if (haveRotVecData) {
+                if (haveRotVecData && preferRotationVector) {
                     // rotation vector sensor data is better
-                    sensorManager.unregisterListener(this,
-                            sensorManager.getDefaultSensor(Sensor.TYPE_MAGNETIC_FIELD));
-                    break;
+                    source.disableSensor(Sensor.TYPE_MAGNETIC_FIELD);
+                    return;
                 }
-                System.arraycopy(event.values, 0, latestMagFields, 0, 3);
+                System.arraycopy(values, 0, latestMagFields, 0, 3);
                 haveMagData = true;
+                freshMagData = true;
                 break;
+            default:
+                return;
         }
 
-        if (haveDataNecessaryToComputeOrientation()) {
-            computeOrientation();
+        if (yawFrozen) updateMagneticFieldProbe(timestampNs);
+
+        if (!haveDataNecessaryToComputeOrientation()) return;
+        if (!isComputationDue(sensorType, timestampNs)) {
+            skippedComputations++;
+            return;
         }
+        freshAccelData = false;
+        freshMagData = false;
+        lastComputeTimestampNs = timestampNs;
+        computeOrientation(timestampNs);
+    }
+
+    /**
+     * @return true if the given sensor event should trigger an orientation computation as per the
+     * current {@link FusionPolicy}.
+     */
+    private boolean isComputationDue(int sensorType, long timestampNs) {
+        switch (fusionPolicy) {
+            case PRIMARY_SENSOR:
+                return Sensor.TYPE_MAGNETIC_FIELD != sensorType;
+            case COMPLETE_UPDATE:
+                return Sensor.TYPE_ROTATION_VECTOR == sensorType
+                        || (freshAccelData && (freshMagData || yawFrozen));
+            case FIXED_CADENCE:
+                return 0 == lastComputeTimestampNs
+                        || timestampNs - lastComputeTimestampNs >= fusionCadenceNs;
+            case EVERY_EVENT:
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @see FusionPolicy
+     */
+    public void setFusionPolicy(FusionPolicy fusionPolicy) {
+        this.fusionPolicy = fusionPolicy;
+    }
+
+    public FusionPolicy getFusionPolicy() {
+        return fusionPolicy;
+    }
+
+    /**
+     * @param intervalUs minimum interval (in microseconds of sensor time) between orientation
+     *                   computations under {@link FusionPolicy#FIXED_CADENCE}.
+     */
+    public void setFusionCadence(long intervalUs) {
+        this.fusionCadenceNs = intervalUs * NANOSECONDS_PER_MICROSECOND;
+    }
+
+    /**
+     * @return number of sensor events that did not trigger an orientation computation due to the
+     * {@link FusionPolicy}, since construction or {@link #resetSkippedComputations()}.
+     */
+    public int getSkippedComputations() {
+        return skippedComputations;
+    }
+
+    public void resetSkippedComputations() {
+        skippedComputations = 0;
     }
 
     /**
@@ -232,15 +1220,17 @@ public class TiltSensor implements SensorEventListener {
     }
 
     /**
-     * @return true if both {@link #latestAccelerations} and {@link #latestMagFields} have valid values.
+     * @return true if both {@link #latestAccelerations} and {@link #latestMagFields} have valid
+     * values, or only the former are needed as yaw is frozen.
      */
     private boolean haveDataNecessaryToComputeOrientation() {
-        return haveRotVecData || ((haveGravData || haveAccelData) && haveMagData);
+        return haveRotVecData || ((haveGravData || haveAccelData) && (haveMagData || yawFrozen));
     }
 
     /**
      * Computes the latest rotation, remaps it according to the current {@link #screenRotation},
-     * and stores it in {@link #rotationMatrix}.
+     * and stores it in {@link #rotationMatrix}. The raw rotation is kept in
+     * {@link #rotationMatrixTemp}. While yaw is frozen, the heading of the result is arbitrary.
      * <p>
      * Should only be called if {@link #haveDataNecessaryToComputeOrientation()} returns true and
      * {@link #haveRotVecData} is false, else result may be undefined.
@@ -248,87 +1238,118 @@ public class TiltSensor implements SensorEventListener {
      * @return true if rotation was retrieved and recalculated, false otherwise.
      */
     private boolean computeRotationMatrix() {
-        if (SensorManager.getRotationMatrix(rotationMatrixTemp, null, latestAccelerations, latestMagFields)) {
-            switch (screenRotation) {
-                case Surface.ROTATION_0:
-                    SensorManager.remapCoordinateSystem(rotationMatrixTemp,
-                            SensorManager.AXIS_X, SensorManager.AXIS_Y, rotationMatrix);
-                    break;
-                case Surface.ROTATION_90:
-                    //noinspection SuspiciousNameCombination
-                    SensorManager.remapCoordinateSystem(rotationMatrixTemp,
-                            SensorManager.AXIS_Y, SensorManager.AXIS_MINUS_X, rotationMatrix);
-                    break;
-                case Surface.ROTATION_180:
-                    SensorManager.remapCoordinateSystem(rotationMatrixTemp,
-                            SensorManager.AXIS_MINUS_X, SensorManager.AXIS_MINUS_Y, rotationMatrix);
-                    break;
-                case Surface.ROTATION_270:
-                    //noinspection SuspiciousNameCombination
-                    SensorManager.remapCoordinateSystem(rotationMatrixTemp,
-                            SensorManager.AXIS_MINUS_Y, SensorManager.AXIS_X, rotationMatrix);
-                    break;
-            }
+        final float[] magFields = yawFrozen ? computeHeadingReference() : latestMagFields;
+        if (SensorManager.getRotationMatrix(rotationMatrixTemp, null, latestAccelerations, magFields)) {
+            SensorManager.remapCoordinateSystem(rotationMatrixTemp,
+                    remapAxisX, remapAxisY, rotationMatrix);
             return true;
         }
         return false;
     }
 
+    /**
+     * Pitch and roll only depend on the direction of gravity, so while the magnetometer is
+     * unreliable any fixed vector in the device frame that is not parallel to gravity can stand in
+     * for the magnetic field. The device axis least aligned with gravity is used.
+     *
+     * @return {@link #headingReference}.
+     */
+    private float[] computeHeadingReference() {
+        final float x = Math.abs(latestAccelerations[0]);
+        final float y = Math.abs(latestAccelerations[1]);
+        final float z = Math.abs(latestAccelerations[2]);
+        headingReference[0] = x <= y && x <= z ? 1 : 0;
+        headingReference[1] = y < x && y <= z ? 1 : 0;
+        headingReference[2] = z < x && z < y ? 1 : 0;
+        return headingReference;
+    }
+
     /**
      * Computes the latest orientation and notifies any {@link TiltListener}s.
+     *
+     * @param timestampNs time of the sensor event that triggered this computation.
      */
-    private void computeOrientation() {
+    private void computeOrientation(long timestampNs) {
+        // Euler angles are only needed by TiltListeners, the rotation only by OrientationListeners
+        final boolean needTilt = !listeners.isEmpty();
+        final boolean needRotation = !orientationListeners.isEmpty()
+                && (haveRotVecData || !yawFrozen);
         boolean updated = false;
         float yaw = 0;
         float pitch = 0;
         float roll = 0;
 
         if (haveRotVecData) {
-            remapQuaternionToScreenRotation(latestQuaternion, screenRotation);
+            System.arraycopy(latestQuaternion, 0, remappedQuaternion, 0, 4);
+            remapQuaternion(remappedQuaternion, quaternionRemap[0], quaternionRemap[1],
+                    quaternionRemap[2], quaternionRemap[3]);
             if (relativeTilt) {
                 if (!haveQuatOrigin) {
-                    System.arraycopy(latestQuaternion, 0, invQuaternionOrigin, 0, 4);
+                    System.arraycopy(remappedQuaternion, 0, invQuaternionOrigin, 0, 4);
                     invertQuaternion(invQuaternionOrigin);
                     haveQuatOrigin = true;
                 }
-                multQuaternions(rotationQuaternion, invQuaternionOrigin, latestQuaternion);
+                multQuaternions(rotationQuaternion, invQuaternionOrigin, remappedQuaternion);
             } else {
-                System.arraycopy(latestQuaternion, 0, rotationQuaternion, 0, 4);
+                System.arraycopy(remappedQuaternion, 0, rotationQuaternion, 0, 4);
             }
 
-            // https://en.wikipedia.org/wiki/Conversion_between_quaternions_and_Euler_angles
-            final float q0 = rotationQuaternion[0]; // w
-            final float q1 = rotationQuaternion[1]; // x
-            final float q2 = rotationQuaternion[2]; // y
-            final float q3 = rotationQuaternion[3]; // z
+            if (needTilt) {
+                // https://en.wikipedia.org/wiki/Conversion_between_quaternions_and_Euler_angles
+                final float q0 = rotationQuaternion[0]; // w
+                final float q1 = rotationQuaternion[1]; // x
+                final float q2 = rotationQuaternion[2]; // y
+                final float q3 = rotationQuaternion[3]; // z
 
-            float rotXRad = (float) Math.atan2(2 * (q0 * q1 + q2 * q3), 1 - 2 * (q1 * q1 + q2 * q2));
-            float rotYRad = (float) Math.asin(2 * (q0 * q2 - q3 * q1));
-            float rotZRad = (float) Math.atan2(2 * (q0 * q3 + q1 * q2), 1 - 2 * (q2 * q2 + q3 * q3));
+                float rotXRad = (float) Math.atan2(2 * (q0 * q1 + q2 * q3), 1 - 2 * (q1 * q1 + q2 * q2));
+                float rotYRad = (float) Math.asin(2 * (q0 * q2 - q3 * q1));
+                float rotZRad = (float) Math.atan2(2 * (q0 * q3 + q1 * q2), 1 - 2 * (q2 * q2 + q3 * q3));
 
-            // constructed to match output of SensorManager#getOrientation
-            yaw = -rotZRad * DEGREES_PER_RADIAN;
-            pitch = -rotXRad * DEGREES_PER_RADIAN;
-            roll = rotYRad * DEGREES_PER_RADIAN;
+                // constructed to match output of SensorManager#getOrientation
+                yaw = -rotZRad * DEGREES_PER_RADIAN;
+                pitch = -rotXRad * DEGREES_PER_RADIAN;
+                roll = rotYRad * DEGREES_PER_RADIAN;
+            }
             updated = true;
         } else if (computeRotationMatrix()) {
             if (relativeTilt) {
                 if (!haveRotOrigin) {
                     System.arraycopy(rotationMatrix, 0, rotationMatrixOrigin, 0, 9);
+                    System.arraycopy(rotationMatrixTemp, 0, rotationMatrixOriginRaw, 0, 9);
                     haveRotOrigin = true;
+                    rotOriginWithoutHeading = yawFrozen;
+                }
+                if (yawFrozen) {
+                    if (needTilt) {
+                        // headings are arbitrary, so approximate the change in pitch and roll
+                        SensorManager.getOrientation(rotationMatrixOrigin, originOrientation);
+                        SensorManager.getOrientation(rotationMatrix, orientation);
+                        orientation[1] -= originOrientation[1];
+                        orientation[2] -= originOrientation[2];
+                    }
+                } else if (needTilt) {
+                    // get yaw / pitch / roll relative to original rotation
+                    SensorManager.getAngleChange(orientation, rotationMatrix, rotationMatrixOrigin);
+                }
+                if (needRotation) {
+                    multTransposedMatrix(relativeRotationMatrix, rotationMatrixOrigin,
+                            rotationMatrix);
+                    quaternionFromMatrix(rotationQuaternion, relativeRotationMatrix);
                 }
-                // get yaw / pitch / roll relative to original rotation
-                SensorManager.getAngleChange(orientation, rotationMatrix, rotationMatrixOrigin);
             } else {
-                // get absolute yaw / pitch / roll
-                SensorManager.getOrientation(rotationMatrix, orientation);
+                if (needTilt) {
+                    // get absolute yaw / pitch / roll
+                    SensorManager.getOrientation(rotationMatrix, orientation);
+                }
+                if (needRotation) quaternionFromMatrix(rotationQuaternion, rotationMatrix);
             }
             /*
              * [0] : yaw, rotation around -z axis
              * [1] : pitch, rotation around -x axis
              * [2] : roll, rotation around y axis
              */
-            yaw = orientation[0] * DEGREES_PER_RADIAN;
+            yaw = yawFrozen ? (null == yawFilter ? 0 : yawFilter.get()) :
+                    orientation[0] * DEGREES_PER_RADIAN;
             pitch = orientation[1] * DEGREES_PER_RADIAN;
             roll = orientation[2] * DEGREES_PER_RADIAN;
             updated = true;
@@ -337,22 +1358,162 @@ public class TiltSensor implements SensorEventListener {
         if (!updated) return;
 
 
-        if (null != yawFilter) yaw = yawFilter.push(yaw);
-        if (null != pitchFilter) pitch = pitchFilter.push(pitch);
-        if (null != rollFilter) roll = rollFilter.push(roll);
+        if (!haveFilterSeed) {
+            if (!haveRestoredTilt) {
+                // warm start: converge in a single sample
+                if (null != yawFilter) yawFilter.reset(yaw);
+                if (null != pitchFilter) pitchFilter.reset(pitch);
+                if (null != rollFilter) rollFilter.reset(roll);
+            }
+            haveOrientationSeed = false;
+            haveFilterSeed = true;
+            haveRestoredTilt = false;
+            converging = convergenceWindowNs > 0;
+            convergenceEndNs = timestampNs + convergenceWindowNs;
+            initialiseDefaultFilters(getCurrentTimeConstant());
+        } else if (converging && timestampNs >= convergenceEndNs) {
+            converging = false;
+            initialiseDefaultFilters(getCurrentTimeConstant());
+        }
+
+        if (needTilt) {
+            if (null != yawFilter) yaw = yawFilter.push(yaw, timestampNs);
+            if (null != pitchFilter) pitch = pitchFilter.push(pitch, timestampNs);
+            if (null != rollFilter) roll = rollFilter.push(roll, timestampNs);
+
+            // while the origin reset animation is ticking, listeners are updated once per frame
+            if (null == originResetTicker || !originResetTicker.isRunning()) {
+                dispatchTilt(yaw, pitch, roll, System.nanoTime());
+            }
+        }
+        if (needRotation) {
+            if (!haveOrientationSeed) {
+                orientationFilter.reset(rotationQuaternion);
+                haveOrientationSeed = true;
+            }
+            orientationFilter.push(rotationQuaternion, timestampNs);
+            dispatchOrientation();
+        }
+    }
+
+    /**
+     * Notifies any {@link OrientationListener}s of the current smoothed orientation, computing
+     * each requested matrix size once.
+     */
+    private void dispatchOrientation() {
+        orientationFilter.get(orientationQuaternion);
+        boolean haveMatrix3 = false;
+        boolean haveMatrix4 = false;
+        for (int i = 0; i < orientationListeners.size(); i++) {
+            final OrientationRegistration registration = orientationListeners.get(i);
+            float[] matrix = null;
+            if (9 == registration.matrixSize) {
+                if (!haveMatrix3) {
+                    matrixFromQuaternion(orientationMatrix3, orientationQuaternion);
+                    haveMatrix3 = true;
+                }
+                matrix = orientationMatrix3;
+            } else if (16 == registration.matrixSize) {
+                if (!haveMatrix4) {
+                    matrixFromQuaternion(orientationMatrix4, orientationQuaternion);
+                    haveMatrix4 = true;
+                }
+                matrix = orientationMatrix4;
+            }
+            registration.listener.onOrientationUpdate(orientationQuaternion, matrix);
+        }
+    }
+
+    /**
+     * Notifies any {@link TiltListener}s of the given filtered tilt, offset by any running origin
+     * reset animation.
+     */
+    private void dispatchTilt(float yaw, float pitch, float roll, long nowNs) {
+        if (originResetAnimator.isRunning()) {
+            originResetAnimator.getOffset(nowNs, originResetOffset);
+            yaw += originResetOffset[0];
+            pitch += originResetOffset[1];
+            roll += originResetOffset[2];
+        }
+
+        long nextFlushNs = Long.MAX_VALUE;
+        for (int i = 0; i < listeners.size(); i++) {
+            final ListenerRegistration registration = listeners.get(i);
+            if (registration.accept(yaw, pitch, roll, nowNs)) {
+                registration.listener.onTiltUpdate(yaw, pitch, roll);
+            } else if (registration.pending) {
+                nextFlushNs = Math.min(nextFlushNs,
+                        registration.lastDeliveryNs + registration.minIntervalNs);
+            }
+        }
+        if (Long.MAX_VALUE != nextFlushNs) schedulePendingTiltFlush(nextFlushNs - nowNs);
+    }
 
+    /**
+     * Delivers the pending updates that are due, and schedules a flush for the rest.
+     */
+    private void flushPendingTilt(long nowNs) {
+        long nextFlushNs = Long.MAX_VALUE;
         for (int i = 0; i < listeners.size(); i++) {
-            listeners.get(i).onTiltUpdate(yaw, pitch, roll);
+            final ListenerRegistration registration = listeners.get(i);
+            registration.flush(nowNs);
+            if (registration.pending) {
+                nextFlushNs = Math.min(nextFlushNs,
+                        registration.lastDeliveryNs + registration.minIntervalNs);
+            }
         }
+        if (Long.MAX_VALUE != nextFlushNs) schedulePendingTiltFlush(nextFlushNs - nowNs);
+    }
+
+    /**
+     * If the dispatching thread has no looper, pending updates wait for the next dispatch.
+     */
+    private void schedulePendingTiltFlush(long delayNs) {
+        if (pendingTiltFlushScheduled) return;
+        if (null == pendingTiltHandler) {
+            final Looper looper = Looper.myLooper();
+            if (null == looper) return;
+            pendingTiltHandler = new Handler(looper);
+        }
+        pendingTiltFlushScheduled = true;
+        final long delayMs = (delayNs + NANOSECONDS_PER_MILLISECOND - 1)
+                / NANOSECONDS_PER_MILLISECOND;
+        pendingTiltHandler.postDelayed(pendingTiltFlush, Math.max(0, delayMs));
     }
 
     /**
      * @param immediate if true, any sensor data filters are reset to new origin immediately.
-     *                  If false, values transition smoothly to new origin.
+     *                  If false, values transition smoothly to new origin over the duration set
+     *                  via {@link #setOriginResetAnimation(long, Interpolator)}. When called on
+     *                  the main thread, the transition is then dispatched once per display frame;
+     *                  on any other thread, only as new sensor samples arrive.
      */
     public void resetOrigin(boolean immediate) {
         haveRotOrigin = false;
         haveQuatOrigin = false;
+        // the transition animation only applies to Euler angles; rotations are smoothed instead
+        if (immediate && relativeTilt && null != orientationFilter) {
+            orientationFilter.resetToIdentity();
+        }
+        if (!immediate && relativeTilt && tracking && haveFilterSeed
+                && originResetAnimator.getDuration() > 0) {
+            // blend from the current tilt, i.e. relative to the old origin, to the new origin
+            final long nowNs = System.nanoTime();
+            if (originResetAnimator.isRunning()) {
+                originResetAnimator.getOffset(nowNs, originResetOffset);
+            } else {
+                originResetOffset[0] = originResetOffset[1] = originResetOffset[2] = 0;
+            }
+            originResetAnimator.start(
+                    (null == yawFilter ? 0 : yawFilter.get()) + originResetOffset[0],
+                    (null == pitchFilter ? 0 : pitchFilter.get()) + originResetOffset[1],
+                    (null == rollFilter ? 0 : rollFilter.get()) + originResetOffset[2],
+                    nowNs);
+            if (Looper.myLooper() == Looper.getMainLooper()) {
+                startOriginResetTicker();
+            }
+            immediate = true;
+        }
         if (immediate) {
             if (null != yawFilter) yawFilter.reset(0);
             if (null != pitchFilter) pitchFilter.reset(0);
@@ -360,36 +1521,162 @@ public class TiltSensor implements SensorEventListener {
         }
     }
 
+    /**
+     * Must be called on the main thread, as per {@link FrameTicker}.
+     */
+    private void startOriginResetTicker() {
+        if (null == originResetTicker) {
+            originResetTicker = FrameTicker.create(new FrameTicker.Callback() {
+                @Override
+                public void onFrame(long frameTimeNanos) {
+                    if (!originResetAnimator.isRunning()) {
+                        originResetTicker.stop();
+                        return;
+                    }
+                    dispatchTilt(null == yawFilter ? 0 : yawFilter.get(),
+                            null == pitchFilter ? 0 : pitchFilter.get(),
+                            null == rollFilter ? 0 : rollFilter.get(), frameTimeNanos);
+                }
+            });
+        }
+        originResetTicker.start();
+    }
+
+    /**
+     * Configures the transition upon {@link #resetOrigin(boolean)} with immediate set to false.
+     * The transition is timed by the clock rather than by samples, so it takes the same time
+     * regardless of sensor rate or filter smoothing.
+     *
+     * @param durationMs   duration of the transition. If 0, the smoothing filters are relied on
+     *                     to transition to the new origin instead.
+     * @param interpolator easing curve of the transition, or null for linear.
+     */
+    public void setOriginResetAnimation(long durationMs, Interpolator interpolator) {
+        originResetAnimator.setDuration(durationMs * NANOSECONDS_PER_MILLISECOND);
+        originResetAnimator.setInterpolator(interpolator);
+    }
+
     @Override
-    public void onAccuracyChanged(Sensor sensor, int accuracy) {
+    public void onAccuracyChanged(int sensorType, int accuracy) {
+        switch (sensorType) {
+            case Sensor.TYPE_ROTATION_VECTOR:
+                rotationVectorAccuracy = accuracy;
+                break;
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                magneticFieldAccuracy = accuracy;
+                updateYawFrozen();
+                break;
+            default:
+                return;
+        }
+        initialiseDefaultFilters(getCurrentTimeConstant());
+    }
+
+    /**
+     * Freezes yaw and switches off the magnetometer once it reports being unreliable, or unfreezes
+     * yaw once it reports a usable accuracy again. Only applies to the accelerometer +
+     * magnetometer path; the rotation vector sensor handles magnetic interference itself.
+     */
+    private void updateYawFrozen() {
+        final boolean unreliable = !haveRotVecData
+                && (SensorManager.SENSOR_STATUS_UNRELIABLE == magneticFieldAccuracy
+                || SensorManager.SENSOR_STATUS_NO_CONTACT == magneticFieldAccuracy);
+        if (unreliable == yawFrozen) return;
+        yawFrozen = unreliable;
+        if (yawFrozen) {
+            source.disableSensor(Sensor.TYPE_MAGNETIC_FIELD);
+            magDisabled = true;
+            magRetryAtNs = 0;
+        } else {
+            magProbeEndNs = 0;
+            if (rotOriginWithoutHeading) {
+                // re-capture the origin with a real heading
+                haveRotOrigin = false;
+            }
+        }
+    }
+
+    /**
+     * While yaw is frozen, periodically re-enables the magnetometer for a short window to find out
+     * whether it has recovered, switching it off again if not.
+     *
+     * @param timestampNs time of the current sensor event.
+     */
+    private void updateMagneticFieldProbe(long timestampNs) {
+        if (magDisabled) {
+            if (0 == magRetryAtNs) {
+                magRetryAtNs = timestampNs + MAG_RETRY_INTERVAL_MS * NANOSECONDS_PER_MILLISECOND;
+            } else if (timestampNs >= magRetryAtNs) {
+                magDisabled = false;
+                magProbeEndNs = timestampNs + MAG_PROBE_WINDOW_MS * NANOSECONDS_PER_MILLISECOND;
+                source.enableSensor(Sensor.TYPE_MAGNETIC_FIELD);
+            }
+        } else if (0 == magProbeEndNs) {
+            magProbeEndNs = timestampNs + MAG_PROBE_WINDOW_MS * NANOSECONDS_PER_MILLISECOND;
+        } else if (timestampNs >= magProbeEndNs) {
+            source.disableSensor(Sensor.TYPE_MAGNETIC_FIELD);
+            magDisabled = true;
+            magRetryAtNs = timestampNs + MAG_RETRY_INTERVAL_MS * NANOSECONDS_PER_MILLISECOND;
+        }
+    }
+
+    /**
+     * @return accuracy, as per {@link android.hardware.SensorEvent#accuracy}, last reported by
+     * the sensor that yaw is derived from: the rotation vector sensor if available, else the
+     * magnetometer. {@link #ACCURACY_UNKNOWN} if not yet reported.
+     */
+    public int getSensorAccuracy() {
+        return haveRotVecData ? rotationVectorAccuracy : magneticFieldAccuracy;
+    }
+
+    /**
+     * @return true while the magnetometer is unreliable, in which case yaw is held at its last
+     * value and pitch and roll are derived from gravity alone.
+     */
+    public boolean isYawFrozen() {
+        return yawFrozen;
+    }
+
+    /**
+     * Carries the relative orientation origin over from the rotation vector path to the
+     * magnetic field + gravity / accelerometer path, so that tilt continues without a jump.
+     */
+    private void convertQuaternionOriginToMatrix() {
+        // invQuaternionOrigin is the inverse of the remapped origin
+        System.arraycopy(invQuaternionOrigin, 0, rotationQuaternion, 0, 4);
+        invertQuaternion(rotationQuaternion);
+        matrixFromQuaternion(rotationMatrixOrigin, rotationQuaternion);
+        // undo remap (inverse is the transpose)
+        remapQuaternion(rotationQuaternion, quaternionRemap[0], quaternionRemap[2],
+                quaternionRemap[1], quaternionRemap[3]);
+        matrixFromQuaternion(rotationMatrixOriginRaw, rotationQuaternion);
+        haveRotOrigin = true;
+        rotOriginWithoutHeading = false;
+        haveQuatOrigin = false;
+    }
 
+    /**
+     * Carries the relative orientation origin over from the magnetic field + gravity /
+     * accelerometer path to the rotation vector path, so that tilt continues without a jump.
+     */
+    private void convertMatrixOriginToQuaternion() {
+        quaternionFromMatrix(invQuaternionOrigin, rotationMatrixOrigin);
+        invertQuaternion(invQuaternionOrigin);
+        haveQuatOrigin = !rotOriginWithoutHeading;
+        haveRotOrigin = false;
     }
 
     /**
-     * Please drop me a PM if you know of a more elegant way to accomplish this - Justas
+     * Rotates the [x, y] components of the given quaternion by the given 2x2 matrix, e.g. to
+     * remap it to the screen rotation. See {@link #computeScreenRotationRemap()}.
      *
-     * @param q              [w, x, y, z]
-     * @param screenRotation see {@link Display#getRotation()}
+     * @param q [w, x, y, z]
      */
-    private static void remapQuaternionToScreenRotation(float[] q, int screenRotation) {
+    private static void remapQuaternion(float[] q, float xx, float xy, float yx, float yy) {
         final float x = q[1];
         final float y = q[2];
-        switch (screenRotation) {
-            case Surface.ROTATION_0:
-                break;
-            case Surface.ROTATION_90:
-                q[1] = -y;
-                q[2] = x;
-                break;
-            case Surface.ROTATION_180:
-                q[1] = -x;
-                q[2] = -y;
-                break;
-            case Surface.ROTATION_270:
-                q[1] = y;
-                q[2] = -x;
-                break;
-        }
+        q[1] = xx * x + xy * y;
+        q[2] = yx * x + yy * y;
     }
 
     /**
@@ -423,4 +1710,116 @@ public class TiltSensor implements SensorEventListener {
             q[i] = -q[i]; // invert quaternion
         }
     }
+
+    /**
+     * @param out 3x3 row-major result, transpose(a) * b.
+     * @param a   3x3 row-major rotation.
+     * @param b   3x3 row-major rotation.
+     */
+    private static void multTransposedMatrix(float[] out, float[] a, float[] b) {
+        for (int row = 0; row < 3; row++) {
+            for (int col = 0; col < 3; col++) {
+                out[row * 3 + col] = a[row] * b[col] + a[3 + row] * b[3 + col]
+                        + a[6 + row] * b[6 + col];
+            }
+        }
+    }
+
+    /**
+     * Inverse of {@link SensorManager#getRotationMatrixFromVector(float[], float[])}, such that
+     * the result matches {@link SensorManager#getQuaternionFromVector(float[], float[])}.
+     *
+     * @param qOut [w, x, y, z] result, with w >= 0.
+     * @param m    3x3 row-major rotation.
+     */
+    private static void quaternionFromMatrix(float[] qOut, float[] m) {
+        // https://en.wikipedia.org/wiki/Rotation_matrix#Quaternion
+        // pick the largest component as the divisor, for numerical stability
+        final float trace = m[0] + m[4] + m[8];
+        if (trace > 0) {
+            final float s = (float) Math.sqrt(trace + 1) * 2; // 4w
+            qOut[0] = s / 4;
+            qOut[1] = (m[7] - m[5]) / s;
+            qOut[2] = (m[2] - m[6]) / s;
+            qOut[3] = (m[3] - m[1]) / s;
+        } else if (m[0] > m[4] && m[0] > m[8]) {
+            final float s = (float) Math.sqrt(1 + m[0] - m[4] - m[8]) * 2; // 4x
+            qOut[0] = (m[7] - m[5]) / s;
+            qOut[1] = s / 4;
+            qOut[2] = (m[1] + m[3]) / s;
+            qOut[3] = (m[2] + m[6]) / s;
+        } else if (m[4] > m[8]) {
+            final float s = (float) Math.sqrt(1 + m[4] - m[0] - m[8]) * 2; // 4y
+            qOut[0] = (m[2] - m[6]) / s;
+            qOut[1] = (m[1] + m[3]) / s;
+            qOut[2] = s / 4;
+            qOut[3] = (m[5] + m[7]) / s;
+        } else {
+            final float s = (float) Math.sqrt(1 + m[8] - m[0] - m[4]) * 2; // 4z
+            qOut[0] = (m[3] - m[1]) / s;
+            qOut[1] = (m[2] + m[6]) / s;
+            qOut[2] = (m[5] + m[7]) / s;
+            qOut[3] = s / 4;
+        }
+        if (qOut[0] < 0) {
+            for (int i = 0; i < 4; i++) {
+                qOut[i] = -qOut[i];
+            }
+        }
+    }
+
+    /**
+     * As {@link SensorManager#getRotationMatrixFromVector(float[], float[])}, from a quaternion.
+     *
+     * @param out 3x3 or 4x4 row-major result.
+     * @param q   [w, x, y, z] unit quaternion.
+     */
+    private static void matrixFromQuaternion(float[] out, float[] q) {
+        final float w = q[0];
+        final float x = q[1];
+        final float y = q[2];
+        final float z = q[3];
+
+        final float xx = 2 * x * x;
+        final float yy = 2 * y * y;
+        final float zz = 2 * z * z;
+        final float xy = 2 * x * y;
+        final float zw = 2 * z * w;
+        final float xz = 2 * x * z;
+        final float yw = 2 * y * w;
+        final float yz = 2 * y * z;
+        final float xw = 2 * x * w;
+
+        if (9 == out.length) {
+            out[0] = 1 - yy - zz;
+            out[1] = xy - zw;
+            out[2] = xz + yw;
+
+            out[3] = xy + zw;
+            out[4] = 1 - xx - zz;
+            out[5] = yz - xw;
+
+            out[6] = xz - yw;
+            out[7] = yz + xw;
+            out[8] = 1 - xx - yy;
+        } else {
+            out[0] = 1 - yy - zz;
+            out[1] = xy - zw;
+            out[2] = xz + yw;
+            out[3] = 0;
+
+            out[4] = xy + zw;
+            out[5] = 1 - xx - zz;
+            out[6] = yz - xw;
+            out[7] = 0;
+
+            out[8] = xz - yw;
+            out[9] = yz + xw;
+            out[10] = 1 - xx - yy;
+            out[11] = 0;
+
+            out[12] = out[13] = out[14] = 0;
+            out[15] = 1;
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.jmedeisis.windowview.sensor;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+
+/**
+ * Provides raw motion sensor samples for a {@link TiltSensor} to interpret. Decouples tilt
+ * processing from where the samples come from, e.g. hardware sensors
+ * ({@link SensorManagerTiltSource}), or a recorded, synthetic or remote feed
+ * ({@link ManualTiltSource}).
+ */
+public interface TiltSource {
+
+    /**
+     * Interface for callback to be invoked when new raw samples are available.
+     */
+    interface SampleListener {
+        /**
+         * @param sensorType  one of {@link Sensor#TYPE_ROTATION_VECTOR},
+         *                    {@link Sensor#TYPE_MAGNETIC_FIELD}, {@link Sensor#TYPE_GRAVITY} or
+         *                    {@link Sensor#TYPE_ACCELEROMETER}.
+         * @param values      as per {@link SensorEvent#values}. Only valid for the duration of
+         *                    the call.
+         * @param timestampNs as per {@link SensorEvent#timestamp}.
+         */
+        void onSample(int sensorType, float[] values, long timestampNs);
+
+        /**
+         * @param accuracy as per {@link SensorEvent#accuracy}.
+         */
+        void onAccuracyChanged(int sensorType, int accuracy);
+    }
+
+    /**
+     * Begin delivering samples to the given listener.
+     *
+     * @param samplingPeriodUs desired delay between samples, see
+     *                         {@link android.hardware.SensorManager#registerListener(android.hardware.SensorEventListener, Sensor, int)}.
+     */
+    void start(SampleListener listener, int samplingPeriodUs);
+
+    /**
+     * Stop delivering samples. Sensors disabled via {@link #disableSensor(int)} are re-enabled
+     * upon the next {@link #start(SampleListener, int)}.
+     */
+    void stop();
+
+    /**
+     * Stop delivering samples of the given sensor type, e.g. because better data is available
+     * from another sensor.
+     */
+    void disableSensor(int sensorType);
+
+    /**
+     * Resume delivering samples of the given sensor type after {@link #disableSensor(int)}, without
+     * affecting other sensors. Has no effect unless started.
+     */
+    void enableSensor(int sensorType);
+}
@@ -0,0 +1,293 @@
+package com.jmedeisis.windowview.sensor;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A subscription to the tilt updates of a {@link TiltSensor}, delivered to a {@link Subscriber} on
+ * its own {@link Executor} according to a backpressure {@link Strategy}. See
+ * {@link TiltSensor#subscribe(Subscriber, Executor, Strategy)}.
+ * <p>
+ * The sensor only ever records the update and, if no delivery is outstanding, hands a single task
+ * to the executor; it never waits for the subscriber. A slow subscriber therefore receives fewer,
+ * or older, updates rather than slowing down the sensor and its other listeners.
+ * <p>
+ * If the subscriber throws, the exception propagates to the executor and delivery resumes with
+ * the next update. If the executor rejects a delivery, e.g. once shut down, the subscription is
+ * cancelled.
+ */
+public class TiltSubscription implements TiltSensor.TiltListener, Runnable {
+
+    /**
+     * Receives tilt updates on the subscription's executor.
+     */
+    public interface Subscriber {
+        /**
+         * @param timestampNs {@link System#nanoTime()} at which the update was dispatched.
+         * @see TiltSensor.TiltListener#onTiltUpdate(float, float, float)
+         */
+        void onTilt(float yaw, float pitch, float roll, long timestampNs);
+    }
+
+    /**
+     * How updates are handled while the subscriber is busy.
+     */
+    public static class Strategy {
+        private static final int LATEST = 0;
+        private static final int SAMPLE = 1;
+        private static final int BUFFER = 2;
+
+        private final int type;
+        private final long intervalNs;
+        private final int capacity;
+
+        private Strategy(int type, long intervalNs, int capacity) {
+            this.type = type;
+            this.intervalNs = intervalNs;
+            this.capacity = capacity;
+        }
+
+        /**
+         * Conflates updates: the subscriber receives only the most recent update once it is ready
+         * for another.
+         */
+        public static Strategy latest() {
+            return new Strategy(LATEST, 0, 1);
+        }
+
+        /**
+         * Delivers the most recent update at most once per interval. Like {@link #latest()},
+         * updates are conflated while the subscriber is busy; the latest one held back is
+         * delivered once the interval has elapsed.
+         */
+        public static Strategy sample(long intervalMs) {
+            if (intervalMs <= 0) {
+                throw new IllegalArgumentException("Sampling interval must be positive.");
+            }
+            return new Strategy(SAMPLE, intervalMs * 1000000L, 1);
+        }
+
+        /**
+         * Delivers every update, in order, buffering up to the given number while the subscriber
+         * is busy. When the buffer is full, the oldest update is dropped.
+         */
+        public static Strategy buffer(int capacity) {
+            if (capacity <= 0) {
+                throw new IllegalArgumentException("Buffer capacity must be positive.");
+            }
+            return new Strategy(BUFFER, 0, capacity);
+        }
+    }
+
+    private static final int FIELDS = 3;
+
+    private final TiltSensor sensor;
+    private final Subscriber subscriber;
+    private final Executor executor;
+    private final Strategy strategy;
+    /**
+     * On the thread tilt updates are dispatched on, i.e. the one this subscription was created on.
+     */
+    private final Handler handler;
+    /**
+     * Delivers updates held back by {@link Strategy#sample(long)} once the interval has elapsed.
+     */
+    private final Runnable flush = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (lock) {
+                flushScheduled = false;
+                if (0 == pendingCount || delivering || cancelled) return;
+                delivering = true;
+            }
+            startDelivery();
+        }
+    };
+
+    private final Object lock = new Object();
+    /**
+     * Ring of pending updates [yaw, pitch, roll], with their timestamps, guarded by {@link #lock}.
+     */
+    private final float[] pending;
+    private final long[] pendingTimestamps;
+    private int pendingStart;
+    private int pendingCount;
+    /**
+     * True while a delivery task is queued or running, guarded by {@link #lock}.
+     */
+    private boolean delivering;
+    private long lastDeliveryNs;
+    /**
+     * True while {@link #flush} is posted, guarded by {@link #lock}.
+     */
+    private boolean flushScheduled;
+    private int droppedCount;
+
+    /**
+     * Consumer-side copy, only touched by the delivery task.
+     */
+    private final float[] delivery;
+    private final long[] deliveryTimestamps;
+
+    private volatile boolean cancelled;
+
+    TiltSubscription(TiltSensor sensor, Subscriber subscriber, Executor executor,
+                     Strategy strategy) {
+        this.sensor = sensor;
+        this.subscriber = subscriber;
+        this.executor = executor;
+        this.strategy = strategy;
+        final Looper looper = Looper.myLooper();
+        this.handler = new Handler(null != looper ? looper : Looper.getMainLooper());
+        this.pending = new float[strategy.capacity * FIELDS];
+        this.pendingTimestamps = new long[strategy.capacity];
+        this.delivery = new float[strategy.capacity * FIELDS];
+        this.deliveryTimestamps = new long[strategy.capacity];
+    }
+
+    /**
+     * Stops delivery. Updates already being delivered complete, no further ones are started.
+     * May be called from any thread, including the subscriber's.
+     */
+    public void cancel() {
+        if (cancelled) return;
+        cancelled = true;
+        handler.removeCallbacks(flush);
+        if (Looper.myLooper() == handler.getLooper()) {
+            sensor.removeListener(this);
+        } else {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    sensor.removeListener(TiltSubscription.this);
+                }
+            });
+        }
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return number of updates that were conflated, skipped or dropped rather than delivered.
+     */
+    public int getDroppedCount() {
+        synchronized (lock) {
+            return droppedCount;
+        }
+    }
+
+    /**
+     * Called by the {@link TiltSensor}; do not call directly.
+     */
+    @Override
+    public void onTiltUpdate(float yaw, float pitch, float roll) {
+        if (cancelled) return;
+        final long nowNs = System.nanoTime();
+        synchronized (lock) {
+            final int index;
+            if (pendingCount < strategy.capacity) {
+                index = (pendingStart + pendingCount) % strategy.capacity;
+                pendingCount++;
+            } else {
+                // replace the latest (conflation) or drop the oldest (buffer)
+                index = pendingStart;
+                pendingStart = (pendingStart + 1) % strategy.capacity;
+                droppedCount++;
+            }
+            pending[index * FIELDS] = yaw;
+            pending[index * FIELDS + 1] = pitch;
+            pending[index * FIELDS + 2] = roll;
+            pendingTimestamps[index] = nowNs;
+
+            if (delivering) return;
+            if (Strategy.SAMPLE == strategy.type && 0 != lastDeliveryNs
+                    && nowNs - lastDeliveryNs < strategy.intervalNs) {
+                scheduleFlush(lastDeliveryNs + strategy.intervalNs - nowNs);
+                return;
+            }
+            delivering = true;
+        }
+        startDelivery();
+    }
+
+    /**
+     * Hands the delivery task to the executor. Must not hold {@link #lock}.
+     */
+    private void startDelivery() {
+        try {
+            executor.execute(this);
+        } catch (RejectedExecutionException e) {
+            // e.g. the executor was shut down, so no update can be delivered any more
+            synchronized (lock) {
+                delivering = false;
+            }
+            cancel();
+        }
+    }
+
+    /**
+     * Delivery task, run on the executor. Do not call directly.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            final int count;
+            synchronized (lock) {
+                count = pendingCount;
+                if (0 == count || cancelled) {
+                    delivering = false;
+                    return;
+                }
+                for (int i = 0; i < count; i++) {
+                    final int index = (pendingStart + i) % strategy.capacity;
+                    System.arraycopy(pending, index * FIELDS, delivery, i * FIELDS, FIELDS);
+                    deliveryTimestamps[i] = pendingTimestamps[index];
+                }
+                pendingStart = 0;
+                pendingCount = 0;
+                lastDeliveryNs = deliveryTimestamps[count - 1];
+            }
+
+            boolean delivered = false;
+            try {
+                for (int i = 0; i < count && !cancelled; i++) {
+                    subscriber.onTilt(delivery[i * FIELDS], delivery[i * FIELDS + 1],
+                            delivery[i * FIELDS + 2], deliveryTimestamps[i]);
+                }
+                delivered = true;
+            } finally {
+                if (!delivered) {
+                    // the subscriber threw; let the next update start a new delivery
+                    synchronized (lock) {
+                        delivering = false;
+                    }
+                }
+            }
+
+            if (Strategy.SAMPLE == strategy.type) {
+                // updates arriving during delivery are held back until the next interval
+                synchronized (lock) {
+                    delivering = false;
+                    if (0 != pendingCount && !cancelled) {
+                        scheduleFlush(lastDeliveryNs + strategy.intervalNs - System.nanoTime());
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Posts {@link #flush}, unless already posted. Must hold {@link #lock}.
+     */
+    private void scheduleFlush(long delayNs) {
+        if (flushScheduled) return;
+        flushScheduled = true;
+        handler.postDelayed(flush, Math.max(0, (delayNs + 999999L) / 1000000L));
+    }
+}
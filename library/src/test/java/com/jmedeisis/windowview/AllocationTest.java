@@ -0,0 +1,338 @@
+package com.jmedeisis.windowview;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.ColorFilter;
+import android.graphics.Matrix;
+import android.graphics.PixelFormat;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.graphics.drawable.Drawable;
+import android.hardware.Sensor;
+import android.view.Surface;
+import android.widget.ImageView;
+
+import com.jmedeisis.windowview.sensor.ManualTiltSource;
+import com.jmedeisis.windowview.sensor.TiltSensor;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Checks that steady-state tilt processing and drawing do not allocate. Synthetic samples are
+ * driven through a {@link TiltSensor} on a {@link ManualTiltSource}, for both the rotation vector
+ * and the accelerometer + magnetometer paths, counting the bytes allocated on the current thread
+ * once warmed up.
+ * <p>
+ * Framework code runs on Robolectric's shadows, which may allocate by themselves. Drawing is
+ * therefore compared against a plain ImageView doing the same framework work, rather than
+ * against zero.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class AllocationTest {
+
+    private static final int WARM_UP_SAMPLES = 2000;
+    private static final int MEASURED_SAMPLES = 5000;
+    private static final int SAMPLES_PER_FRAME = 4;
+    private static final int VIEW_WIDTH = 480;
+    private static final int VIEW_HEIGHT = 800;
+
+    private com.sun.management.ThreadMXBean threads;
+    private ManualTiltSource source;
+    private TiltSensor sensor;
+    private SyntheticMotion motion;
+
+    @Before
+    public void setUp() {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        source = new ManualTiltSource();
+        sensor = new TiltSensor(source, Surface.ROTATION_0, true);
+        motion = new SyntheticMotion();
+    }
+
+    @Test
+    public void rotationVectorTiltDoesNotAllocate() {
+        assertSensorDoesNotAllocate(true);
+    }
+
+    @Test
+    public void accelerometerAndMagneticFieldTiltDoesNotAllocate() {
+        assertSensorDoesNotAllocate(false);
+    }
+
+    private void assertSensorDoesNotAllocate(final boolean rotationVector) {
+        final CountingListener listener = new CountingListener();
+        sensor.addListener(listener);
+        sensor.startTracking(0);
+
+        final Runnable samples = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < MEASURED_SAMPLES; i++) {
+                    motion.push(source, rotationVector);
+                }
+            }
+        };
+        // past filter convergence and origin capture
+        for (int i = 0; i < WARM_UP_SAMPLES; i++) {
+            motion.push(source, rotationVector);
+        }
+        listener.updates = 0;
+
+        final long allocated = measureAllocatedBytes(samples);
+        assertTrue("No tilt updates were dispatched.", listener.updates > 0);
+        assertEquals("Bytes allocated by steady-state tilt processing.", 0, allocated);
+    }
+
+    @Test
+    public void windowViewDrawDoesNotAllocate() {
+        final Context context = RuntimeEnvironment.application;
+        final NullCanvas canvas = new NullCanvas();
+
+        final WindowView windowView = new WindowView(context);
+        windowView.setImageDrawable(new SizedDrawable(VIEW_WIDTH * 2, VIEW_HEIGHT));
+        windowView.layout(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+        sensor.addListener(windowView);
+
+        final ControlImageView control = new ControlImageView(context);
+        control.setScaleType(ImageView.ScaleType.CENTER_CROP);
+        control.setImageDrawable(new SizedDrawable(VIEW_WIDTH * 2, VIEW_HEIGHT));
+        control.layout(0, 0, VIEW_WIDTH, VIEW_HEIGHT);
+        sensor.addListener(new TiltSensor.TiltListener() {
+            @Override
+            public void onTiltUpdate(float yaw, float pitch, float roll) {
+                control.invalidate();
+            }
+        });
+
+        sensor.startTracking(0);
+
+        final Runnable frames = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < MEASURED_SAMPLES; i++) {
+                    motion.push(source, true);
+                    if (0 == i % SAMPLES_PER_FRAME) {
+                        windowView.onDraw(canvas);
+                        control.drawContent(canvas);
+                    }
+                }
+            }
+        };
+        final Runnable controlFrames = new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < MEASURED_SAMPLES; i++) {
+                    motion.push(source, true);
+                    if (0 == i % SAMPLES_PER_FRAME) {
+                        control.drawContent(canvas);
+                        control.drawContent(canvas);
+                    }
+                }
+            }
+        };
+        frames.run();
+        controlFrames.run();
+
+        final long allocated = measureAllocatedBytes(frames);
+        final long controlAllocated = measureAllocatedBytes(controlFrames);
+        assertTrue("Drawing WindowView allocated " + allocated + " bytes, drawing ImageView "
+                + controlAllocated + " bytes.", allocated <= controlAllocated);
+    }
+
+    /**
+     * @return bytes allocated on the current thread while running the given task.
+     */
+    private long measureAllocatedBytes(Runnable task) {
+        final long threadId = Thread.currentThread().getId();
+        // querying may itself allocate
+        final long overheadStart = threads.getThreadAllocatedBytes(threadId);
+        final long overhead = threads.getThreadAllocatedBytes(threadId) - overheadStart;
+
+        final long start = threads.getThreadAllocatedBytes(threadId);
+        task.run();
+        return threads.getThreadAllocatedBytes(threadId) - start - overhead;
+    }
+
+    private static class CountingListener implements TiltSensor.TiltListener {
+        int updates;
+
+        @Override
+        public void onTiltUpdate(float yaw, float pitch, float roll) {
+            updates++;
+        }
+    }
+
+    /**
+     * Generates smooth, repeatable device motion as raw sensor samples, without allocating. The
+     * device gently rocks about its x and y axes.
+     */
+    private static class SyntheticMotion {
+        /**
+         * 200Hz, roughly {@link android.hardware.SensorManager#SENSOR_DELAY_FASTEST}.
+         */
+        private static final long SAMPLE_PERIOD_NS = 5000000L;
+        private static final float GRAVITY = 9.81f;
+        private static final float MAX_PITCH_RAD = 0.35f;
+        private static final float MAX_ROLL_RAD = 0.5f;
+
+        private final float[] rotationVector = new float[4];
+        private final float[] acceleration = new float[3];
+        private final float[] magneticField = {0, 22, -42};
+        private long timestampNs;
+
+        void push(ManualTiltSource source, boolean rotationVector) {
+            update();
+            if (rotationVector) {
+                source.push(Sensor.TYPE_ROTATION_VECTOR, this.rotationVector, timestampNs);
+            } else {
+                source.push(Sensor.TYPE_ACCELEROMETER, acceleration, timestampNs);
+                source.push(Sensor.TYPE_MAGNETIC_FIELD, magneticField, timestampNs);
+            }
+        }
+
+        private void update() {
+            timestampNs += SAMPLE_PERIOD_NS;
+            final double t = timestampNs * 1e-9;
+            final double pitch = MAX_PITCH_RAD * Math.sin(Math.PI * t);
+            final double roll = MAX_ROLL_RAD * Math.sin(0.6 * Math.PI * t);
+
+            // rotation about x by pitch, then about y by roll, as a unit quaternion [x, y, z, w]
+            final double cx = Math.cos(pitch / 2), sx = Math.sin(pitch / 2);
+            final double cy = Math.cos(roll / 2), sy = Math.sin(roll / 2);
+            rotationVector[0] = (float) (sx * cy);
+            rotationVector[1] = (float) (cx * sy);
+            rotationVector[2] = (float) (sx * sy);
+            rotationVector[3] = (float) (cx * cy);
+
+            // gravity as seen by the tilted device
+            acceleration[0] = (float) (-GRAVITY * Math.sin(roll));
+            acceleration[1] = (float) (GRAVITY * Math.sin(pitch) * Math.cos(roll));
+            acceleration[2] = (float) (GRAVITY * Math.cos(pitch) * Math.cos(roll));
+        }
+    }
+
+    /**
+     * Exposes ImageView's own drawing, as a baseline for WindowView's.
+     */
+    private static class ControlImageView extends ImageView {
+        ControlImageView(Context context) {
+            super(context);
+        }
+
+        void drawContent(Canvas canvas) {
+            onDraw(canvas);
+        }
+    }
+
+    /**
+     * Drawable of a fixed intrinsic size that draws nothing.
+     */
+    private static class SizedDrawable extends Drawable {
+        private final int width;
+        private final int height;
+
+        SizedDrawable(int width, int height) {
+            this.width = width;
+            this.height = height;
+        }
+
+        @Override
+        public int getIntrinsicWidth() {
+            return width;
+        }
+
+        @Override
+        public int getIntrinsicHeight() {
+            return height;
+        }
+
+        @Override
+        public void draw(Canvas canvas) {
+        }
+
+        @Override
+        public void setAlpha(int alpha) {
+        }
+
+        @Override
+        public void setColorFilter(ColorFilter colorFilter) {
+        }
+
+        @Override
+        public int getOpacity() {
+            return PixelFormat.OPAQUE;
+        }
+    }
+
+    /**
+     * Canvas that ignores all drawing, so that only the views' own work is measured.
+     */
+    private static class NullCanvas extends Canvas {
+        private int saveCount = 1;
+
+        @Override
+        public int save() {
+            return saveCount++;
+        }
+
+        @Override
+        public void restore() {
+            saveCount--;
+        }
+
+        @Override
+        public int getSaveCount() {
+            return saveCount;
+        }
+
+        @Override
+        public void restoreToCount(int saveCount) {
+            this.saveCount = saveCount;
+        }
+
+        @Override
+        public void translate(float dx, float dy) {
+        }
+
+        @Override
+        public void concat(Matrix matrix) {
+        }
+
+        @Override
+        public boolean clipRect(int left, int top, int right, int bottom) {
+            return true;
+        }
+
+        @Override
+        public boolean clipRect(float left, float top, float right, float bottom) {
+            return true;
+        }
+
+        @Override
+        public boolean clipRect(Rect rect) {
+            return true;
+        }
+
+        @Override
+        public boolean clipRect(RectF rect) {
+            return true;
+        }
+    }
+}
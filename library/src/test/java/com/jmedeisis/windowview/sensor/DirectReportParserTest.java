@@ -0,0 +1,233 @@
+package com.jmedeisis.windowview.sensor;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Exercises {@link DirectReportParser} with synthetic direct channel buffers, written the way the
+ * sensor HAL would.
+ */
+public class DirectReportParserTest {
+
+    private static final int SENSOR_TYPE = 11;
+    private static final int TOKEN = 7;
+    private static final long COUNTER_MASK = 0xffffffffL;
+
+    private DirectReportParser parser;
+    private RecordingHandler handler;
+
+    @Before
+    public void setUp() {
+        parser = new DirectReportParser();
+        handler = new RecordingHandler();
+    }
+
+    @Test
+    public void readsRecordsInOrder() {
+        final ByteBuffer buffer = allocate(8);
+        writeRecords(buffer, 1, 5);
+
+        assertEquals(5, parser.read(buffer, handler));
+        handler.assertCounters(1, 5);
+        assertEquals(SENSOR_TYPE, handler.lastType);
+        assertEquals(TOKEN, handler.lastToken);
+
+        assertEquals("Records must only be read once.", 0, parser.read(buffer, handler));
+
+        writeRecords(buffer, 6, 10);
+        handler.counters.clear();
+        assertEquals(5, parser.read(buffer, handler));
+        handler.assertCounters(6, 10);
+        assertEquals(0, parser.getDroppedCount());
+        assertEquals(0, parser.getTornCount());
+    }
+
+    @Test
+    public void countsRecordsDroppedWhenLapped() {
+        final ByteBuffer buffer = allocate(4);
+        writeRecords(buffer, 1, 10);
+
+        // records 1 to 6 were overwritten before they could be read
+        assertEquals(4, parser.read(buffer, handler));
+        handler.assertCounters(7, 10);
+        assertEquals(6, parser.getDroppedCount());
+
+        writeRecords(buffer, 11, 20);
+        handler.counters.clear();
+        assertEquals(4, parser.read(buffer, handler));
+        handler.assertCounters(17, 20);
+        assertEquals(12, parser.getDroppedCount());
+
+        parser.resetStatistics();
+        assertEquals(0, parser.getDroppedCount());
+    }
+
+    @Test
+    public void skipsStaleRecords() {
+        final ByteBuffer buffer = allocate(4);
+        writeRecords(buffer, 1, 4);
+        assertEquals(4, parser.read(buffer, handler));
+
+        // the next slot still holds record 1, from the previous lap
+        handler.counters.clear();
+        assertEquals(0, parser.read(buffer, handler));
+        assertEquals(0, handler.counters.size());
+
+        writeRecords(buffer, 5, 6);
+        assertEquals(2, parser.read(buffer, handler));
+        handler.assertCounters(5, 6);
+        assertEquals(0, parser.getDroppedCount());
+    }
+
+    @Test
+    public void skipToLatestSkipsExistingRecords() {
+        final ByteBuffer buffer = allocate(4);
+        writeRecords(buffer, 1, 6);
+        parser.skipToLatest(buffer);
+        assertEquals(0, parser.read(buffer, handler));
+
+        writeRecords(buffer, 7, 7);
+        assertEquals(1, parser.read(buffer, handler));
+        handler.assertCounters(7, 7);
+        assertEquals(0, parser.getDroppedCount());
+    }
+
+    @Test
+    public void ignoresRecordsOfUnexpectedSize() {
+        final ByteBuffer buffer = allocate(4);
+        writeRecords(buffer, 1, 3);
+        buffer.putInt(DirectReportParser.RECORD_SIZE + DirectReportParser.OFFSET_SIZE, 0);
+
+        assertEquals(2, parser.read(buffer, handler));
+        assertEquals(2, handler.counters.size());
+        assertEquals(1L, (long) handler.counters.get(0));
+        assertEquals(3L, (long) handler.counters.get(1));
+    }
+
+    @Test
+    public void readsAcrossCounterWrapAround() {
+        final ByteBuffer buffer = allocate(4);
+        // the parser tracks counters relative to the last one read, so advance it in steps
+        for (long counter : new long[]{0x40000000L, 0x80000000L, 0xc0000000L, 0xfffffffdL}) {
+            clear(buffer);
+            writeRecords(buffer, counter, counter);
+            parser.skipToLatest(buffer);
+        }
+
+        writeRecords(buffer, 0xfffffffeL, 1);
+        assertEquals(4, parser.read(buffer, handler));
+        assertEquals(4, handler.counters.size());
+        assertEquals(0xfffffffeL, (long) handler.counters.get(0));
+        assertEquals(0xffffffffL, (long) handler.counters.get(1));
+        assertEquals(0L, (long) handler.counters.get(2));
+        assertEquals(1L, (long) handler.counters.get(3));
+        assertEquals(0, parser.getDroppedCount());
+
+        writeRecords(buffer, 2, 3);
+        handler.counters.clear();
+        assertEquals(2, parser.read(buffer, handler));
+        handler.assertCounters(2, 3);
+    }
+
+    @Test
+    public void discardsTornRecords() {
+        final ByteBuffer buffer = allocate(4);
+        writeRecords(buffer, 1, 3);
+        parser = new DirectReportParser() {
+            @Override
+            void onRecordDecoded(ByteBuffer buffer, int offset) {
+                if (2 * DirectReportParser.RECORD_SIZE == offset) {
+                    // the writer laps the reader while record 3 is being read
+                    writeRecords(buffer, 4, 7);
+                }
+            }
+        };
+
+        // record 3 is discarded, reading goes on with the records that overwrote 1 and 2
+        assertEquals(4, parser.read(buffer, handler));
+        assertEquals(4, handler.counters.size());
+        assertEquals(1L, (long) handler.counters.get(0));
+        assertEquals(2L, (long) handler.counters.get(1));
+        assertEquals(4L, (long) handler.counters.get(2));
+        assertEquals(5L, (long) handler.counters.get(3));
+        assertEquals(1, parser.getTornCount());
+
+        handler.counters.clear();
+        assertEquals(2, parser.read(buffer, handler));
+        handler.assertCounters(6, 7);
+        assertEquals(1, parser.getTornCount());
+        assertEquals(0, parser.getDroppedCount());
+    }
+
+    private static ByteBuffer allocate(int recordCount) {
+        return ByteBuffer.allocateDirect(recordCount * DirectReportParser.RECORD_SIZE)
+                .order(ByteOrder.nativeOrder());
+    }
+
+    private static void clear(ByteBuffer buffer) {
+        for (int i = 0; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    /**
+     * Writes records with the given counters, inclusive, allowing for 32-bit wrap around.
+     */
+    private static void writeRecords(ByteBuffer buffer, long firstCounter, long lastCounter) {
+        long counter = firstCounter;
+        while (true) {
+            writeRecord(buffer, counter);
+            if (counter == lastCounter) break;
+            counter = (counter + 1) & COUNTER_MASK;
+        }
+    }
+
+    /**
+     * Writes a record like the HAL does: invalidates the counter, writes the payload, then
+     * publishes the new counter.
+     */
+    private static void writeRecord(ByteBuffer buffer, long counter) {
+        final int recordCount = buffer.capacity() / DirectReportParser.RECORD_SIZE;
+        final int offset = (int) (((counter - 1) & COUNTER_MASK) % recordCount)
+                * DirectReportParser.RECORD_SIZE;
+        buffer.putInt(offset + DirectReportParser.OFFSET_COUNTER, 0);
+        buffer.putInt(offset + DirectReportParser.OFFSET_SIZE, DirectReportParser.RECORD_SIZE);
+        buffer.putInt(offset + DirectReportParser.OFFSET_TOKEN, TOKEN);
+        buffer.putInt(offset + DirectReportParser.OFFSET_TYPE, SENSOR_TYPE);
+        buffer.putLong(offset + DirectReportParser.OFFSET_TIMESTAMP, counter);
+        for (int i = 0; i < DirectReportParser.VALUE_COUNT; i++) {
+            buffer.putFloat(offset + DirectReportParser.OFFSET_DATA + i * 4, i);
+        }
+        buffer.putInt(offset + DirectReportParser.OFFSET_COUNTER, (int) counter);
+    }
+
+    /**
+     * Records the counter of each report, which {@link #writeRecord} stores as the timestamp.
+     */
+    private static class RecordingHandler implements DirectReportParser.ReportHandler {
+        final List<Long> counters = new ArrayList<>();
+        int lastType;
+        int lastToken;
+
+        @Override
+        public void onReport(int sensorType, int token, float[] values, long timestampNs) {
+            counters.add(timestampNs);
+            lastType = sensorType;
+            lastToken = token;
+        }
+
+        void assertCounters(long first, long last) {
+            assertEquals(last - first + 1, counters.size());
+            for (int i = 0; i < counters.size(); i++) {
+                assertEquals(first + i, (long) counters.get(i));
+            }
+        }
+    }
+}
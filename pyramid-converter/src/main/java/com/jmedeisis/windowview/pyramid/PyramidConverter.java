@@ -0,0 +1,160 @@
+package com.jmedeisis.windowview.pyramid;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Converts a regular image (anything readable by {@link ImageIO}) into the memory-mapped image
+ * pyramid format read by the library's PyramidImage. See its documentation for the file format;
+ * the constants here must be kept in sync with it.
+ * <p>
+ * Usage: {@code PyramidConverter <input image> <output file> [tile size]}
+ */
+public class PyramidConverter {
+
+    private static final int MAGIC = 0x50565757; // "WWVP" little-endian
+    private static final int VERSION = 1;
+    private static final int PIXEL_FORMAT_RGB_565 = 1;
+    private static final int BYTES_PER_PIXEL = 2;
+    private static final int HEADER_SIZE = 20;
+    private static final int LEVEL_HEADER_SIZE = 24;
+
+    private static final int DEFAULT_TILE_SIZE = 256;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("Usage: PyramidConverter <input image> <output file> [tile size]");
+            System.exit(1);
+        }
+        final int tileSize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_TILE_SIZE;
+
+        final BufferedImage image = ImageIO.read(new File(args[0]));
+        if (null == image) {
+            System.err.println("Unsupported image format: " + args[0]);
+            System.exit(1);
+        }
+        convert(image, new File(args[1]), tileSize);
+    }
+
+    /**
+     * Writes the given image as a pyramid of levels, each half the size of the previous, down to
+     * the first level that fits in a single tile.
+     */
+    public static void convert(BufferedImage image, File output, int tileSize) throws IOException {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive.");
+        }
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+
+        // build levels, full resolution first
+        final List<int[]> levelPixels = new ArrayList<>();
+        final List<int[]> levelSizes = new ArrayList<>();
+        while (true) {
+            levelPixels.add(pixels);
+            levelSizes.add(new int[]{width, height});
+            if (width <= tileSize && height <= tileSize) break;
+            final int halfWidth = Math.max(1, (width + 1) / 2);
+            final int halfHeight = Math.max(1, (height + 1) / 2);
+            pixels = downsample(pixels, width, height, halfWidth, halfHeight);
+            width = halfWidth;
+            height = halfHeight;
+        }
+
+        final int levelCount = levelPixels.size();
+        final ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE + levelCount * LEVEL_HEADER_SIZE)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putInt(PIXEL_FORMAT_RGB_565)
+                .putInt(tileSize).putInt(levelCount);
+        final long tileBytes = (long) tileSize * tileSize * BYTES_PER_PIXEL;
+        long offset = header.capacity();
+        for (int[] size : levelSizes) {
+            final int tilesAcross = (size[0] + tileSize - 1) / tileSize;
+            final int tilesDown = (size[1] + tileSize - 1) / tileSize;
+            header.putInt(size[0]).putInt(size[1]).putInt(tilesAcross).putInt(tilesDown)
+                    .putLong(offset);
+            offset += tilesAcross * tilesDown * tileBytes;
+        }
+
+        final OutputStream out = new BufferedOutputStream(new FileOutputStream(output));
+        try {
+            out.write(header.array());
+            final ByteBuffer tile = ByteBuffer.allocate((int) tileBytes)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            for (int level = 0; level < levelCount; level++) {
+                writeLevel(out, tile, levelPixels.get(level),
+                        levelSizes.get(level)[0], levelSizes.get(level)[1], tileSize);
+            }
+        } finally {
+            out.close();
+        }
+
+        System.out.println("Wrote " + levelCount + " levels, " + offset + " bytes to " + output);
+    }
+
+    private static void writeLevel(OutputStream out, ByteBuffer tile, int[] pixels,
+                                   int width, int height, int tileSize) throws IOException {
+        for (int tileY = 0; tileY < height; tileY += tileSize) {
+            for (int tileX = 0; tileX < width; tileX += tileSize) {
+                tile.clear();
+                for (int y = tileY; y < tileY + tileSize; y++) {
+                    for (int x = tileX; x < tileX + tileSize; x++) {
+                        // pad edge tiles by repeating the last row / column
+                        final int argb = pixels[Math.min(y, height - 1) * width
+                                + Math.min(x, width - 1)];
+                        tile.putShort(toRgb565(argb));
+                    }
+                }
+                out.write(tile.array());
+            }
+        }
+    }
+
+    private static short toRgb565(int argb) {
+        final int r = (argb >> 16) & 0xff;
+        final int g = (argb >> 8) & 0xff;
+        final int b = argb & 0xff;
+        return (short) (((r >> 3) << 11) | ((g >> 2) << 5) | (b >> 3));
+    }
+
+    /**
+     * 2x2 box filter; odd trailing rows and columns are averaged with themselves.
+     */
+    private static int[] downsample(int[] pixels, int width, int height,
+                                    int halfWidth, int halfHeight) {
+        final int[] half = new int[halfWidth * halfHeight];
+        for (int y = 0; y < halfHeight; y++) {
+            final int y0 = Math.min(2 * y, height - 1);
+            final int y1 = Math.min(2 * y + 1, height - 1);
+            for (int x = 0; x < halfWidth; x++) {
+                final int x0 = Math.min(2 * x, width - 1);
+                final int x1 = Math.min(2 * x + 1, width - 1);
+                half[y * halfWidth + x] = average(pixels[y0 * width + x0], pixels[y0 * width + x1],
+                        pixels[y1 * width + x0], pixels[y1 * width + x1]);
+            }
+        }
+        return half;
+    }
+
+    private static int average(int p0, int p1, int p2, int p3) {
+        int result = 0;
+        for (int shift = 0; shift <= 24; shift += 8) {
+            final int sum = ((p0 >> shift) & 0xff) + ((p1 >> shift) & 0xff)
+                    + ((p2 >> shift) & 0xff) + ((p3 >> shift) & 0xff);
+            result |= ((sum + 2) / 4) << shift;
+        }
+        return result;
+    }
+}
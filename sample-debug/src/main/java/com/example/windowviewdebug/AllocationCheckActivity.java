@@ -0,0 +1,104 @@
+package com.example.windowviewdebug;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Bundle;
+import android.os.Debug;
+import android.support.v7.app.AppCompatActivity;
+import android.view.LayoutInflater;
+import android.view.Surface;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import com.jmedeisis.windowview.WindowView;
+import com.jmedeisis.windowview.sensor.ManualTiltSource;
+import com.jmedeisis.windowview.sensor.TiltSensor;
+
+/**
+ * Checks that steady-state tilt processing and drawing do not allocate. Drives thousands of
+ * synthetic sensor samples through a {@link TiltSensor}, for both the rotation vector and the
+ * accelerometer + magnetometer paths, and draws a {@link WindowView} once every few samples,
+ * counting allocations on the current thread.
+ * <p>
+ * Allocation counting requires a debuggable build.
+ */
+public class AllocationCheckActivity extends AppCompatActivity {
+
+    private static final int WARM_UP_SAMPLES = 1000;
+    private static final int MEASURED_SAMPLES = 5000;
+    private static final int SAMPLES_PER_FRAME = 4;
+
+    private LinearLayout container;
+    private TextView results;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_benchmark);
+
+        container = (LinearLayout) findViewById(R.id.benchmark_container);
+        results = (TextView) findViewById(R.id.benchmark_results);
+
+        final WindowView windowView = (WindowView) LayoutInflater.from(this)
+                .inflate(R.layout.benchmark_window_view_manual, container, false);
+        container.addView(windowView);
+
+        // run once laid out, so that the view has a size to draw at
+        container.post(new Runnable() {
+            @Override
+            public void run() {
+                results.setText(getString(R.string.allocation_check_results,
+                        check(windowView, true), check(windowView, false)));
+            }
+        });
+    }
+
+    /**
+     * @return result summary.
+     */
+    private String check(WindowView windowView, boolean rotationVector) {
+        final ManualTiltSource source = new ManualTiltSource();
+        final TiltSensor sensor = new TiltSensor(source, Surface.ROTATION_0, true);
+        final SyntheticMotion motion = new SyntheticMotion();
+        final Bitmap bitmap = Bitmap.createBitmap(windowView.getWidth(), windowView.getHeight(),
+                Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+
+        windowView.attachTiltTracking(sensor);
+        sensor.startTracking(0);
+
+        // past filter convergence, origin capture and first draws
+        run(windowView, source, motion, canvas, rotationVector, WARM_UP_SAMPLES);
+
+        Debug.startAllocCounting();
+        Debug.resetThreadAllocCount();
+        Debug.resetThreadAllocSize();
+        run(windowView, source, motion, canvas, rotationVector, MEASURED_SAMPLES);
+        Debug.stopAllocCounting();
+        final int count = Debug.getThreadAllocCount();
+        final int size = Debug.getThreadAllocSize();
+
+        sensor.stopTracking();
+        windowView.detachTiltTracking(sensor);
+        bitmap.recycle();
+
+        return getString(0 == count ? R.string.allocation_check_pass :
+                        R.string.allocation_check_fail,
+                rotationVector ? "Rotation vector" : "Accelerometer + magnetometer",
+                MEASURED_SAMPLES, MEASURED_SAMPLES / SAMPLES_PER_FRAME, count, size);
+    }
+
+    private static void run(WindowView windowView, ManualTiltSource source, SyntheticMotion motion,
+                            Canvas canvas, boolean rotationVector, int samples) {
+        for (int i = 0; i < samples; i++) {
+            if (rotationVector) {
+                motion.pushRotationVector(source);
+            } else {
+                motion.pushAccelerometerAndMagneticField(source);
+            }
+            if (0 == i % SAMPLES_PER_FRAME) {
+                windowView.draw(canvas);
+            }
+        }
+    }
+}
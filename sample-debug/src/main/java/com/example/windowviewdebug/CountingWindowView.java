@@ -0,0 +1,54 @@
+package com.example.windowviewdebug;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.support.annotation.NonNull;
+import android.util.AttributeSet;
+
+import com.jmedeisis.windowview.WindowView;
+
+/**
+ * WindowView that counts invalidations and draws, for {@link DrawBenchmarkActivity}.
+ */
+public class CountingWindowView extends WindowView {
+
+    private int invalidateCount;
+    private int drawCount;
+
+    public CountingWindowView(Context context) {
+        super(context);
+    }
+
+    public CountingWindowView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+    }
+
+    public CountingWindowView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+    }
+
+    @Override
+    public void invalidate() {
+        invalidateCount++;
+        super.invalidate();
+    }
+
+    @Override
+    protected void onDraw(@NonNull Canvas canvas) {
+        drawCount++;
+        super.onDraw(canvas);
+    }
+
+    public int getInvalidateCount() {
+        return invalidateCount;
+    }
+
+    public int getDrawCount() {
+        return drawCount;
+    }
+
+    public void resetCounts() {
+        invalidateCount = 0;
+        drawCount = 0;
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.windowviewdebug;
 
 import android.annotation.TargetApi;
+import android.content.Intent;
 import android.content.pm.ActivityInfo;
 import android.hardware.SensorManager;
 import android.os.Build;
@@ -20,6 +21,12 @@ public class DebugActivity extends AppCompatActivity {
     private static final String ORIENTATION = "orientation";
     private static final String DEBUG_TILT = "debugTilt";
     private static final String DEBUG_IMAGE = "debugImage";
+    private static final String TILT_SENSOR_STATE = "tiltSensorState";
+    /**
+     * The compass icon is tiny, so skip imperceptible changes.
+     */
+    private static final float COMPASS_MIN_DELTA = 0.5f;
+    private static final int COMPASS_MAX_RATE_HZ = 60;
     private boolean debugTilt;
     private boolean debugImage;
     private TiltSensor tiltSensor;
@@ -32,6 +39,10 @@ public class DebugActivity extends AppCompatActivity {
         setContentView(R.layout.activity_debug);
 
         tiltSensor = new TiltSensor(this, true);
+        if (null != savedInstanceState && savedInstanceState.containsKey(TILT_SENSOR_STATE)) {
+            // keep orientation origin across re-creation
+            tiltSensor.restoreState(savedInstanceState.getFloatArray(TILT_SENSOR_STATE));
+        }
 
         windowView1 = (DebugWindowView) findViewById(R.id.windowView1);
         windowView2 = (DebugWindowView) findViewById(R.id.windowView2);
@@ -84,6 +95,7 @@ public class DebugActivity extends AppCompatActivity {
         outState.putInt(ORIENTATION, getRequestedOrientation());
         outState.putBoolean(DEBUG_TILT, debugTilt);
         outState.putBoolean(DEBUG_IMAGE, debugImage);
+        outState.putFloatArray(TILT_SENSOR_STATE, tiltSensor.saveState());
     }
 
     @TargetApi(Build.VERSION_CODES.HONEYCOMB)
@@ -112,7 +124,7 @@ public class DebugActivity extends AppCompatActivity {
                     z.setRotationX(pitch);
                     z.setRotationY(roll - 90);
                 }
-            });
+            }, COMPASS_MIN_DELTA, COMPASS_MAX_RATE_HZ);
             actionView.setOnClickListener(new View.OnClickListener() {
                 @Override
                 public void onClick(View v) {
@@ -168,6 +180,15 @@ public class DebugActivity extends AppCompatActivity {
                 windowView1.setDebugEnabled(debugTilt, debugImage);
                 windowView2.setDebugEnabled(debugTilt, debugImage);
                 return true;
+            case R.id.action_inflation_benchmark:
+                startActivity(new Intent(this, InflationBenchmarkActivity.class));
+                return true;
+            case R.id.action_allocation_check:
+                startActivity(new Intent(this, AllocationCheckActivity.class));
+                return true;
+            case R.id.action_draw_benchmark:
+                startActivity(new Intent(this, DrawBenchmarkActivity.class));
+                return true;
         }
         return super.onOptionsItemSelected(item);
     }
@@ -15,6 +15,7 @@ import android.util.Log;
 import android.view.Surface;
 
 import com.jmedeisis.windowview.WindowView;
+import com.jmedeisis.windowview.sensor.TiltSensor;
 
 /**
  * WindowView that exposes many internal properties through overlay debug text.
@@ -113,19 +114,13 @@ public class DebugWindowView extends WindowView {
 
             debugText(canvas, i++, getTranslateMode() + " translateMode");
 
-            float translateX = 0;
-            float translateY = 0;
-            if (heightMatches) {
-                translateX = (-getHorizontalOrigin() +
-                        clampAbsoluteFloating(getHorizontalOrigin(), latestRoll, getMaxRoll())) / getMaxRoll();
-            } else {
-                translateY = (getVerticalOrigin() -
-                        clampAbsoluteFloating(getVerticalOrigin(), latestPitch, getMaxPitch())) / getMaxPitch();
-            }
-            debugText(canvas, i++, "tx " + translateX);
-            debugText(canvas, i++, "ty " + translateY);
-            debugText(canvas, i++, "tx abs " + Math.round((widthDifference / 2) * translateX));
-            debugText(canvas, i++, "ty abs " + Math.round((heightDifference / 2) * translateY));
+            // as drawn, i.e. after the response curve and limits
+            final float translateX = getImageTranslationX();
+            final float translateY = getImageTranslationY();
+            debugText(canvas, i++, "tx " + (0 == widthDifference ? 0 : translateX / (widthDifference / 2)));
+            debugText(canvas, i++, "ty " + (0 == heightDifference ? 0 : translateY / (heightDifference / 2)));
+            debugText(canvas, i++, "tx abs " + Math.round(translateX));
+            debugText(canvas, i++, "ty abs " + Math.round(translateY));
             debugText(canvas, i++, "height matches " + heightMatches);
         }
 
@@ -147,6 +142,26 @@ public class DebugWindowView extends WindowView {
                         debugText(canvas, i++, "MAG + ACCELEROMETER");
                         break;
                 }
+                switch (sensor.getSensorAccuracy()) {
+                    case TiltSensor.ACCURACY_UNKNOWN:
+                        debugText(canvas, i++, "accuracy unknown");
+                        break;
+                    case SensorManager.SENSOR_STATUS_ACCURACY_HIGH:
+                        debugText(canvas, i++, "accuracy HIGH");
+                        break;
+                    case SensorManager.SENSOR_STATUS_ACCURACY_MEDIUM:
+                        debugText(canvas, i++, "accuracy MEDIUM");
+                        break;
+                    case SensorManager.SENSOR_STATUS_ACCURACY_LOW:
+                        debugText(canvas, i++, "accuracy LOW");
+                        break;
+                    default:
+                        debugText(canvas, i++, "accuracy UNRELIABLE");
+                        break;
+                }
+                if (sensor.isYawFrozen()) {
+                    debugText(canvas, i++, "YAW FROZEN");
+                }
                 switch (getSensorSamplingPeriod()) {
                     case SensorManager.SENSOR_DELAY_FASTEST:
                         debugText(canvas, i++, "SENSOR_DELAY_FASTEST");
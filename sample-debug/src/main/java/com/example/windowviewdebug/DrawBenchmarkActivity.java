@@ -0,0 +1,145 @@
+package com.example.windowviewdebug;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.LayoutInflater;
+import android.view.Surface;
+import android.view.View;
+import android.widget.TextView;
+
+import com.jmedeisis.windowview.WindowViewCoordinator;
+import com.jmedeisis.windowview.sensor.ManualTiltSource;
+import com.jmedeisis.windowview.sensor.TiltSensor;
+
+import java.util.Locale;
+
+/**
+ * Measures how the per-frame cost of many WindowViews driven by a single {@link TiltSensor} grows
+ * with their number, as in {@link DebugActivity} with two, with each view attached to the sensor
+ * and with all views in a {@link WindowViewCoordinator}. Replays synthetic motion and draws every
+ * view into an offscreen canvas each frame, without attaching the views to a window.
+ */
+public class DrawBenchmarkActivity extends AppCompatActivity {
+
+    private static final int[] VIEW_COUNTS = {1, 5, 10, 20, 50, 100};
+    private static final int WARM_UP_FRAMES = 60;
+    private static final int FRAMES = 600;
+    /**
+     * 200Hz samples at 60fps.
+     */
+    private static final int SAMPLES_PER_FRAME = 3;
+    private static final int VIEW_WIDTH_PX = 240;
+    private static final int VIEW_HEIGHT_PX = 160;
+
+    private TextView results;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_benchmark);
+
+        results = (TextView) findViewById(R.id.benchmark_results);
+        results.post(new Runnable() {
+            @Override
+            public void run() {
+                runBenchmark();
+            }
+        });
+    }
+
+    private void runBenchmark() {
+        final StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "%5s %12s %12s %10s %12s %10s%n",
+                "views", "mode", "dispatch µs", "draw µs", "invalidates", "draws"));
+        for (int count : VIEW_COUNTS) {
+            report.append(measure(count, false));
+            report.append(measure(count, true));
+        }
+        results.setText(report.toString());
+    }
+
+    /**
+     * @return one line of results, all per frame.
+     */
+    private String measure(int viewCount, boolean coordinated) {
+        final LayoutInflater inflater = LayoutInflater.from(this);
+        final ManualTiltSource source = new ManualTiltSource();
+        final TiltSensor sensor = new TiltSensor(source, Surface.ROTATION_0, true);
+        final SyntheticMotion motion = new SyntheticMotion();
+        final Bitmap bitmap = Bitmap.createBitmap(VIEW_WIDTH_PX, VIEW_HEIGHT_PX,
+                Bitmap.Config.ARGB_8888);
+        final Canvas canvas = new Canvas(bitmap);
+        final WindowViewCoordinator coordinator = coordinated ? new WindowViewCoordinator() : null;
+
+        final CountingWindowView[] views = new CountingWindowView[viewCount];
+        for (int i = 0; i < viewCount; i++) {
+            views[i] = (CountingWindowView) inflater.inflate(
+                    R.layout.benchmark_counting_window_view, null, false);
+            views[i].measure(
+                    View.MeasureSpec.makeMeasureSpec(VIEW_WIDTH_PX, View.MeasureSpec.EXACTLY),
+                    View.MeasureSpec.makeMeasureSpec(VIEW_HEIGHT_PX, View.MeasureSpec.EXACTLY));
+            views[i].layout(0, 0, VIEW_WIDTH_PX, VIEW_HEIGHT_PX);
+            if (coordinated) {
+                coordinator.addView(views[i]);
+            } else {
+                views[i].attachTiltTracking(sensor);
+            }
+        }
+        if (coordinated) coordinator.attachTiltTracking(sensor);
+        sensor.startTracking(0);
+
+        runFrames(views, coordinator, source, motion, canvas, WARM_UP_FRAMES);
+        for (CountingWindowView view : views) {
+            view.resetCounts();
+        }
+        final long[] times = runFrames(views, coordinator, source, motion, canvas, FRAMES);
+
+        int invalidates = 0;
+        int draws = 0;
+        for (CountingWindowView view : views) {
+            invalidates += view.getInvalidateCount();
+            draws += view.getDrawCount();
+            if (coordinated) {
+                coordinator.removeView(view);
+            } else {
+                view.detachTiltTracking(sensor);
+            }
+        }
+        if (coordinated) coordinator.detachTiltTracking(sensor);
+        sensor.stopTracking();
+        bitmap.recycle();
+
+        return String.format(Locale.US, "%5d %12s %12.1f %10.1f %12.1f %10.1f%n", viewCount,
+                coordinated ? "coordinated" : "attached",
+                times[0] / 1000f / FRAMES, times[1] / 1000f / FRAMES,
+                (float) invalidates / FRAMES, (float) draws / FRAMES);
+    }
+
+    /**
+     * @param coordinator if not null, updated once per frame as its frame callback would.
+     * @return total time (in nanoseconds) spent dispatching samples, and drawing.
+     */
+    private static long[] runFrames(CountingWindowView[] views, WindowViewCoordinator coordinator,
+                                    ManualTiltSource source, SyntheticMotion motion,
+                                    Canvas canvas, int frames) {
+        long dispatchNs = 0;
+        long drawNs = 0;
+        for (int frame = 0; frame < frames; frame++) {
+            final long dispatchStart = System.nanoTime();
+            for (int i = 0; i < SAMPLES_PER_FRAME; i++) {
+                motion.pushRotationVector(source);
+            }
+            if (null != coordinator) coordinator.update();
+            final long drawStart = System.nanoTime();
+            for (CountingWindowView view : views) {
+                view.draw(canvas);
+            }
+            final long drawEnd = System.nanoTime();
+            dispatchNs += drawStart - dispatchStart;
+            drawNs += drawEnd - drawStart;
+        }
+        return new long[]{dispatchNs, drawNs};
+    }
+}
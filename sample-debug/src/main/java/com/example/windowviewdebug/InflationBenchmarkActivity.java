@@ -0,0 +1,109 @@
+package com.example.windowviewdebug;
+
+import android.os.Bundle;
+import android.support.v7.app.AppCompatActivity;
+import android.view.LayoutInflater;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Measures the cost of inflating and attaching WindowViews, and the heap they retain, for layouts
+ * with 1, 10 and 100 instances. Results are the median of several runs.
+ */
+public class InflationBenchmarkActivity extends AppCompatActivity {
+
+    private static final int[] VIEW_COUNTS = {1, 10, 100};
+    private static final int RUNS = 7;
+
+    private LinearLayout container;
+    private TextView results;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_benchmark);
+
+        container = (LinearLayout) findViewById(R.id.benchmark_container);
+        results = (TextView) findViewById(R.id.benchmark_results);
+
+        // run once the window is attached, so that attaching views is measured too
+        container.post(new Runnable() {
+            @Override
+            public void run() {
+                runBenchmark();
+            }
+        });
+    }
+
+    private void runBenchmark() {
+        final LayoutInflater inflater = LayoutInflater.from(this);
+        final StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "%5s %12s %12s %12s%n",
+                "views", "inflate µs", "attach µs", "heap B/view"));
+
+        // warm up class loading and resource caches
+        measure(inflater, VIEW_COUNTS[VIEW_COUNTS.length - 1]);
+
+        for (int count : VIEW_COUNTS) {
+            final long[] inflateNs = new long[RUNS];
+            final long[] attachNs = new long[RUNS];
+            final long[] heapBytes = new long[RUNS];
+            for (int run = 0; run < RUNS; run++) {
+                final long[] sample = measure(inflater, count);
+                inflateNs[run] = sample[0];
+                attachNs[run] = sample[1];
+                heapBytes[run] = sample[2];
+            }
+            report.append(String.format(Locale.US, "%5d %12d %12d %12d%n", count,
+                    median(inflateNs) / 1000 / count,
+                    median(attachNs) / 1000 / count,
+                    median(heapBytes) / count));
+        }
+        results.setText(report.toString());
+    }
+
+    /**
+     * @return time spent inflating, time spent attaching to the window (in nanoseconds) and heap
+     * retained by the views (in bytes).
+     */
+    private long[] measure(LayoutInflater inflater, int count) {
+        container.removeAllViews();
+        final long heapBefore = usedHeap();
+
+        final LinearLayout holder = new LinearLayout(this);
+        holder.setOrientation(LinearLayout.VERTICAL);
+        final long inflateStart = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            inflater.inflate(R.layout.benchmark_window_view, holder, true);
+        }
+        final long inflateEnd = System.nanoTime();
+
+        container.addView(holder);
+        final long attachEnd = System.nanoTime();
+
+        final long heapAfter = usedHeap();
+        // detach, so that WindowViews stop tracking
+        container.removeAllViews();
+
+        return new long[]{inflateEnd - inflateStart, attachEnd - inflateEnd,
+                Math.max(0, heapAfter - heapBefore)};
+    }
+
+    private static long usedHeap() {
+        final Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            System.runFinalization();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static long median(long[] values) {
+        final long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.windowviewdebug;
+
+import android.hardware.Sensor;
+
+import com.jmedeisis.windowview.sensor.ManualTiltSource;
+
+/**
+ * Generates smooth, repeatable device motion as raw sensor samples for
+ * {@link ManualTiltSource}, without allocating. The device gently rocks about its x and y axes.
+ */
+class SyntheticMotion {
+
+    /**
+     * 200Hz, roughly {@link android.hardware.SensorManager#SENSOR_DELAY_FASTEST}.
+     */
+    static final long SAMPLE_PERIOD_NS = 5000000L;
+
+    private static final float GRAVITY = 9.81f;
+    private static final float MAX_PITCH_RAD = 0.35f;
+    private static final float MAX_ROLL_RAD = 0.5f;
+    private static final float PITCH_FREQUENCY_HZ = 0.5f;
+    private static final float ROLL_FREQUENCY_HZ = 0.3f;
+
+    private final float[] rotationVector = new float[4];
+    private final float[] acceleration = new float[3];
+    private final float[] magneticField = {0, 22, -42};
+
+    private long timestampNs;
+
+    /**
+     * Advances time by one sample period and pushes a rotation vector sample.
+     */
+    void pushRotationVector(ManualTiltSource source) {
+        update();
+        source.push(Sensor.TYPE_ROTATION_VECTOR, rotationVector, timestampNs);
+    }
+
+    /**
+     * Advances time by one sample period and pushes an accelerometer and a magnetometer sample.
+     */
+    void pushAccelerometerAndMagneticField(ManualTiltSource source) {
+        update();
+        source.push(Sensor.TYPE_ACCELEROMETER, acceleration, timestampNs);
+        source.push(Sensor.TYPE_MAGNETIC_FIELD, magneticField, timestampNs);
+    }
+
+    long getTimestampNs() {
+        return timestampNs;
+    }
+
+    private void update() {
+        timestampNs += SAMPLE_PERIOD_NS;
+        final double t = timestampNs * 1e-9;
+        final double pitch = MAX_PITCH_RAD * Math.sin(2 * Math.PI * PITCH_FREQUENCY_HZ * t);
+        final double roll = MAX_ROLL_RAD * Math.sin(2 * Math.PI * ROLL_FREQUENCY_HZ * t);
+
+        // rotation about x by pitch, then about y by roll, as a unit quaternion [x, y, z, w]
+        final double cx = Math.cos(pitch / 2), sx = Math.sin(pitch / 2);
+        final double cy = Math.cos(roll / 2), sy = Math.sin(roll / 2);
+        rotationVector[0] = (float) (sx * cy);
+        rotationVector[1] = (float) (cx * sy);
+        rotationVector[2] = (float) (sx * sy);
+        rotationVector[3] = (float) (cx * cy);
+
+        // gravity as seen by the tilted device
+        acceleration[0] = (float) (-GRAVITY * Math.sin(roll));
+        acceleration[1] = (float) (GRAVITY * Math.sin(pitch) * Math.cos(roll));
+        acceleration[2] = (float) (GRAVITY * Math.cos(pitch) * Math.cos(roll));
+    }
+}